@@ -0,0 +1,41 @@
+package pl.edu.agh.internetshop;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Deterministic orders shared by the benchmarks: 1000 recipients, 5000 products, 100 cities.
+public class BenchmarkOrders {
+    public static final int RECIPIENTS = 1000;
+    public static final int PRODUCTS = 5000;
+    private static final Address SENDER = new Address("Internet Shop", "1 Market Street", "30-059", "Krakow");
+
+    public static String recipientName(int index) {
+        return "Recipient " + index;
+    }
+
+    public static String productName(int index) {
+        return "Product " + index;
+    }
+
+    public static List<Order> create(int count, int productsPerOrder, long seed) {
+        Random random = new Random(seed);
+        List<Order> orders = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) orders.add(create(random, productsPerOrder));
+        return orders;
+    }
+
+    public static Order create(Random random, int productsPerOrder) {
+        List<Product> products = new ArrayList<>(productsPerOrder);
+        for(int j = 0; j < productsPerOrder; j++) {
+            int product = random.nextInt(PRODUCTS);
+            products.add(new Product(productName(product), BigDecimal.valueOf(99 + product * 7L % 10000, 2)));
+        }
+        Order order = new Order(products);
+        if(random.nextInt(4) == 0) order.setGeneralDiscount(BigDecimal.valueOf(1 + random.nextInt(30), 2));
+        int recipient = random.nextInt(RECIPIENTS);
+        order.setShipment(new Shipment(SENDER, new Address(recipientName(recipient), "Street " + recipient, "01003", "City " + recipient % 100)));
+        return order;
+    }
+}
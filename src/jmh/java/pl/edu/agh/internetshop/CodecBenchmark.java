@@ -0,0 +1,53 @@
+package pl.edu.agh.internetshop;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+    private static final int ORDERS = 1000;
+
+    @Param({"1", "10"})
+    public int productsPerOrder;
+
+    private List<Order> orders;
+    private ByteBuffer buffer;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setUp() {
+        orders = BenchmarkOrders.create(ORDERS, productsPerOrder, 42);
+        buffer = ByteBuffer.allocateDirect(ORDERS * (64 + productsPerOrder * 32));
+        encoded = ByteBuffer.allocateDirect(buffer.capacity());
+        OrderEncoder encoder = new OrderEncoder();
+        for(Order order: orders) encoder.encode(order, encoded);
+        encoded.flip();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public ByteBuffer encode() {
+        OrderEncoder encoder = new OrderEncoder();
+        buffer.clear();
+        for(Order order: orders) encoder.encode(order, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public Order decode() {
+        OrderDecoder decoder = new OrderDecoder();
+        ByteBuffer in = encoded.duplicate();
+        Order order = null;
+        for(int i = 0; i < ORDERS; i++) order = decoder.decodeOrder(in);
+        return order;
+    }
+}
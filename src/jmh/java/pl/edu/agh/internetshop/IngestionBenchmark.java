@@ -0,0 +1,69 @@
+package pl.edu.agh.internetshop;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Every iteration adds ORDERS fresh orders per thread, so no order is added twice; the score is the
+// time one thread takes to add all of them.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = IngestionBenchmark.ORDERS)
+@Measurement(iterations = 5, batchSize = IngestionBenchmark.ORDERS)
+@Fork(1)
+public class IngestionBenchmark {
+    static final int ORDERS = 100000;
+
+    @State(Scope.Benchmark)
+    public static class Histories {
+        @Param({"1", "10"})
+        public int productsPerOrder;
+
+        OrderHistory history;
+        ColumnarOrderHistory columnarHistory;
+
+        // a fresh history every iteration keeps its size, and so the cost of growing it, comparable
+        @Setup(Level.Iteration)
+        public void createHistories() {
+            history = new OrderHistory();
+            columnarHistory = new ColumnarOrderHistory();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        List<Order> orders;
+        int next;
+
+        // orders added once carry the listeners of their history, so they are not reused
+        @Setup(Level.Iteration)
+        public void createOrders(Histories histories, ThreadParams thread) {
+            orders = BenchmarkOrders.create(ORDERS, histories.productsPerOrder, 42 + thread.getThreadIndex());
+            next = 0;
+        }
+
+        Order next() {
+            return orders.get(next++);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void addOrder(Histories histories, Cursor cursor) {
+        histories.history.addOrder(cursor.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void addOrderConcurrently(Histories histories, Cursor cursor) {
+        histories.history.addOrder(cursor.next());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void addOrderToColumnarHistory(Histories histories, Cursor cursor) {
+        histories.columnarHistory.addOrder(cursor.next());
+    }
+}
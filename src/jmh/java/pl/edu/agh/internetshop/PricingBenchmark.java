@@ -0,0 +1,44 @@
+package pl.edu.agh.internetshop;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PricingBenchmark {
+    @Param({"1", "10", "100", "1000"})
+    public int productsPerOrder;
+
+    private Order order;
+    private BigDecimal[] discounts;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        order = BenchmarkOrders.create(1, productsPerOrder, 42).get(0);
+        discounts = new BigDecimal[] {new BigDecimal("0.05"), new BigDecimal("0.1")};
+    }
+
+    @Benchmark
+    public BigDecimal cachedTotalPrice() {
+        return order.getTotalPrice();
+    }
+
+    // every call changes the discount, so the total is recomputed
+    @Benchmark
+    public BigDecimal totalPriceAfterDiscountChange() {
+        order.setGeneralDiscount(discounts[next++ & 1]);
+        return order.getTotalPrice();
+    }
+
+    @Benchmark
+    public Money totalPriceAsMoney() {
+        return order.getTotalPriceAsMoney();
+    }
+}
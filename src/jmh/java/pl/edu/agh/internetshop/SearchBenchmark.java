@@ -0,0 +1,80 @@
+package pl.edu.agh.internetshop;
+
+import org.openjdk.jmh.annotations.*;
+import pl.edu.agh.internetshop.search.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Histories of 10M orders need a large heap, e.g. -Pjmh.args="-jvmArgs -Xmx16g"
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int historySize;
+
+    @Param({"3"})
+    public int productsPerOrder;
+
+    @Param({"recipient", "productName", "price", "priceRange", "recipientAndProductName", "recipientAndPriceRange", "unindexed"})
+    public String strategy;
+
+    private OrderHistory history;
+    private ColumnarOrderHistory columnarHistory;
+    private SearchStrategy searchStrategy;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        history = new OrderHistory();
+        columnarHistory = new ColumnarOrderHistory();
+        for(Order order: BenchmarkOrders.create(historySize, productsPerOrder, 42)) {
+            history.addOrder(order);
+            columnarHistory.addOrder(order);
+        }
+        searchStrategy = createStrategy();
+        pool = new ForkJoinPool();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private SearchStrategy createStrategy() {
+        RecipientSearchStrategy recipient = new RecipientSearchStrategy(BenchmarkOrders.recipientName(7));
+        ProductNameSearchStrategy productName = new ProductNameSearchStrategy(BenchmarkOrders.productName(7));
+        PriceRangeSearchStrategy priceRange = new PriceRangeSearchStrategy(new BigDecimal("100.00"), new BigDecimal("110.00"));
+        switch(strategy) {
+            case "recipient": return recipient;
+            case "productName": return productName;
+            case "price": return new PriceSearchStrategy(new BigDecimal("123.45"));
+            case "priceRange": return priceRange;
+            case "recipientAndProductName": return new CompositeSearchStrategy(recipient, productName);
+            case "recipientAndPriceRange": return new CompositeSearchStrategy(recipient, priceRange);
+            case "unindexed": return order -> order.getProducts().size() > productsPerOrder;
+            default: throw new IllegalArgumentException("Unknown strategy: " + strategy);
+        }
+    }
+
+    @Benchmark
+    public List<Order> search() {
+        return history.searchOrders(searchStrategy, null);
+    }
+
+    @Benchmark
+    public List<Order> parallelSearch() {
+        return history.searchOrders(searchStrategy, pool);
+    }
+
+    @Benchmark
+    public List<Order> columnarSearch() {
+        return columnarHistory.searchOrders(searchStrategy);
+    }
+}
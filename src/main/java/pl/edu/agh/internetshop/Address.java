@@ -1,16 +1,20 @@
 package pl.edu.agh.internetshop;
 
+import java.util.Objects;
+
 public class Address {
     private final String name;
     private final String streetAndHomeNr;
     private final String postalCode;
     private final String city;
+    private final int hash;
 
     public Address(String name, String streetAndHomeNr, String postalCode, String city) {
         this.name = name;
         this.streetAndHomeNr = streetAndHomeNr;
         this.postalCode = postalCode;
         this.city = city;
+        this.hash = Objects.hash(name, streetAndHomeNr, postalCode, city);
     }
 
     public String getName() {
@@ -28,4 +32,21 @@ public class Address {
     public String getCity() {
         return city;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Address address = (Address) o;
+        return hash == address.hash &&
+                Objects.equals(name, address.name) &&
+                Objects.equals(streetAndHomeNr, address.streetAndHomeNr) &&
+                Objects.equals(postalCode, address.postalCode) &&
+                Objects.equals(city, address.city);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
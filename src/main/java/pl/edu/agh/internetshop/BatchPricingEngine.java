@@ -0,0 +1,204 @@
+package pl.edu.agh.internetshop;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Prices many orders at once under a {@link DiscountPlan}. Total prices are computed in minor units
+ * into a long array, in ranges of orders split across a {@link ForkJoinPool}, and equal what
+ * {@link Order#getTotalPrice()} returns once the plan's discount is set, with the same HALF_UP
+ * rounding at {@link Product#PRICE_PRECISION} and the order's {@link TaxPolicy}. Orders with product
+ * prices of more fraction digits are priced with BigDecimal, like Order does.
+ *
+ * <p>Every range is priced in two passes. The first walks the orders once and extracts the net
+ * price of every line item into a long array and its tax rate, as an index into a table of the
+ * range's distinct rates, into an int array. The second sums and taxes those arrays per order
+ * without touching the orders or looking anything up.
+ */
+public class BatchPricingEngine {
+    private static final int THRESHOLD = 1024;
+
+    private final ForkJoinPool pool;
+
+    public BatchPricingEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public BatchPricingEngine(ForkJoinPool pool) {
+        this.pool = Objects.requireNonNull(pool);
+    }
+
+    // total prices in minor units the orders would have under the plan, orders are not changed
+    public long[] computeTotalPrices(List<Order> orders, DiscountPlan plan) {
+        Order[] batch = orders.toArray(new Order[0]);
+        return computeTotalPrices(batch, planDiscounts(batch, plan));
+    }
+
+    // sets the plan's discounts and returns the new total prices in minor units, which become the
+    // orders' cached total prices, so the plan is run and the orders are priced only once
+    public long[] apply(List<Order> orders, DiscountPlan plan) {
+        Order[] batch = orders.toArray(new Order[0]);
+        BigDecimal[] planDiscounts = planDiscounts(batch, plan);
+        long[] totalPrices = computeTotalPrices(batch, planDiscounts);
+        for(int i = 0; i < batch.length; i++) {
+            if(planDiscounts[i] != null) batch[i].setGeneralDiscount(planDiscounts[i], Money.ofMinorUnits(totalPrices[i]));
+        }
+        return totalPrices;
+    }
+
+    // general discounts the plan gives, null for orders it leaves unchanged
+    private static BigDecimal[] planDiscounts(Order[] batch, DiscountPlan plan) {
+        BigDecimal[] planDiscounts = new BigDecimal[batch.length];
+        for(int i = 0; i < batch.length; i++) {
+            BigDecimal generalDiscount = plan.getGeneralDiscount(batch[i]);
+            if(generalDiscount != null && !Order.isCorrectDiscountValue(generalDiscount)) {
+                throw new IllegalArgumentException("Discount must be in range 0 to 1");
+            }
+            planDiscounts[i] = generalDiscount;
+        }
+        return planDiscounts;
+    }
+
+    private long[] computeTotalPrices(Order[] batch, BigDecimal[] planDiscounts) {
+        BigDecimal[] generalDiscounts = new BigDecimal[batch.length];
+        // rates of 1 - discount, campaigns usually use a handful of distinct discounts
+        Map<BigDecimal, Rate> discountRates = new HashMap<>();
+        Rate[] generalDiscountRates = new Rate[batch.length];
+        for(int i = 0; i < batch.length; i++) {
+            BigDecimal generalDiscount = planDiscounts[i] == null ? batch[i].getGeneralDiscount() : planDiscounts[i];
+            generalDiscounts[i] = generalDiscount;
+            generalDiscountRates[i] = discountRates.computeIfAbsent(generalDiscount, discount -> Rate.of(BigDecimal.ONE.subtract(discount)));
+        }
+        long[] totalPrices = new long[batch.length];
+        pool.invoke(new Pricing(batch, generalDiscounts, generalDiscountRates, totalPrices, 0, batch.length));
+        return totalPrices;
+    }
+
+    private static class Pricing extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Order[] orders;
+        private final BigDecimal[] generalDiscounts;
+        private final Rate[] generalDiscountRates;
+        private final long[] totalPrices;
+        private final int from;
+        private final int to;
+
+        Pricing(Order[] orders, BigDecimal[] generalDiscounts, Rate[] generalDiscountRates, long[] totalPrices, int from, int to) {
+            this.orders = orders;
+            this.generalDiscounts = generalDiscounts;
+            this.generalDiscountRates = generalDiscountRates;
+            this.totalPrices = totalPrices;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Pricing(orders, generalDiscounts, generalDiscountRates, totalPrices, from, middle),
+                        new Pricing(orders, generalDiscounts, generalDiscountRates, totalPrices, middle, to));
+                return;
+            }
+            LineItems lineItems = new LineItems(to - from);
+            for(int i = from; i < to; i++) {
+                if(!lineItems.extract(orders[i])) totalPrices[i] = Money.minorUnitsOf(orders[i].computeTotalPrice(generalDiscounts[i]));
+            }
+            long[] sums = new long[lineItems.taxRateCount];
+            int[] used = new int[lineItems.taxRateCount];
+            for(int i = from; i < to; i++) {
+                if(!lineItems.extracted[i - from]) continue;
+                try {
+                    totalPrices[i] = lineItems.taxed(i - from, generalDiscountRates[i], sums, used);
+                } catch (ArithmeticException e) {
+                    totalPrices[i] = Money.minorUnitsOf(orders[i].computeTotalPrice(generalDiscounts[i]));
+                }
+            }
+        }
+    }
+
+    // line items of a range of orders; items of order i are at starts[i] until starts[i + 1]
+    private static class LineItems {
+        final int[] starts;
+        // false for orders whose prices have too many fraction digits
+        final boolean[] extracted;
+        long[] netPrices = new long[16];
+        int[] taxRateIds = new int[16];
+        // distinct rates, orders rarely mix more than a few, so a linear scan beats hashing
+        Rate[] taxRates = new Rate[4];
+        int orders;
+        int size;
+        int taxRateCount;
+
+        LineItems(int orders) {
+            this.starts = new int[orders + 1];
+            this.extracted = new boolean[orders];
+        }
+
+        // product prices after product discounts, false when they have too many fraction digits
+        boolean extract(Order order) {
+            int start = size;
+            TaxPolicy taxPolicy = order.getTaxPolicy();
+            List<LineItem> lineItems = order.getLineItems();
+            boolean exact = true;
+            try {
+                for(int line = 0; line < lineItems.size(); line++) {
+                    long netPrice = order.discountedMinorUnits(line);
+                    add(netPrice, taxRateId(taxPolicy.getTaxRate(lineItems.get(line).getProduct())));
+                }
+            } catch (ArithmeticException e) {
+                size = start;
+                exact = false;
+            }
+            extracted[orders] = exact;
+            starts[++orders] = size;
+            return exact;
+        }
+
+        private void add(long netPrice, int taxRateId) {
+            if(size == netPrices.length) {
+                netPrices = Arrays.copyOf(netPrices, size * 2);
+                taxRateIds = Arrays.copyOf(taxRateIds, size * 2);
+            }
+            netPrices[size] = netPrice;
+            taxRateIds[size++] = taxRateId;
+        }
+
+        private int taxRateId(Rate taxRate) {
+            for(int id = 0; id < taxRateCount; id++) {
+                if(taxRates[id] == taxRate || taxRates[id].equals(taxRate)) return id;
+            }
+            if(taxRateCount == taxRates.length) taxRates = Arrays.copyOf(taxRates, taxRateCount * 2);
+            taxRates[taxRateCount] = taxRate;
+            return taxRateCount++;
+        }
+
+        // like TaxBreakdown.taxed, sums is indexed by tax rate and left zeroed, used lists the rates summed
+        long taxed(int order, Rate discount, long[] sums, int[] used) {
+            int usedCount = 0;
+            try {
+                for(int item = starts[order]; item < starts[order + 1]; item++) {
+                    int id = taxRateIds[item];
+                    if(sums[id] == 0) {
+                        boolean listed = false;
+                        for(int i = 0; i < usedCount && !listed; i++) listed = used[i] == id;
+                        if(!listed) used[usedCount++] = id;
+                    }
+                    sums[id] = Math.addExact(sums[id], netPrices[item]);
+                }
+                long gross = 0;
+                for(int i = 0; i < usedCount; i++) gross = Math.addExact(gross, taxRates[used[i]].applyTo(discount.applyTo(sums[used[i]])));
+                return gross;
+            } finally {
+                for(int i = 0; i < usedCount; i++) sums[used[i]] = 0;
+            }
+        }
+    }
+}
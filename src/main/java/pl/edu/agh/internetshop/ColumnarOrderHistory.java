@@ -0,0 +1,290 @@
+package pl.edu.agh.internetshop;
+
+import pl.edu.agh.internetshop.search.ColumnarSearchStrategy;
+import pl.edu.agh.internetshop.search.OrderColumns;
+import pl.edu.agh.internetshop.search.SearchStrategy;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Order history for large, analytical workloads which keeps orders in columns of primitive arrays
+ * instead of object graphs. Products, addresses, discounts, tax policies and payment and shipment
+ * methods are dictionary-encoded, so every distinct value is kept once and an order costs a few
+ * dozen bytes plus 8 bytes per product.
+ * <p>
+ * Orders are copied into the columns when added and rebuilt when returned, so later changes of an
+ * added order are not seen by the history, and returned orders are equal copies rather than the
+ * added instances. Strategies implementing {@link ColumnarSearchStrategy} are evaluated directly on
+ * the columns, any other strategy gets every order rebuilt.
+ */
+public class ColumnarOrderHistory {
+    private static final byte PAID = 1;
+    private static final byte HAS_SHIPMENT = 2;
+    private static final byte SHIPPED = 4;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ValueDictionary<Product> products = new ValueDictionary<>(new HashMap<>());
+    private final ValueDictionary<BigDecimal> discounts = new ValueDictionary<>(new HashMap<>());
+    private final ValueDictionary<String> recipientNames = new ValueDictionary<>(new HashMap<>());
+    private final ValueDictionary<Address> addresses = new ValueDictionary<>(new IdentityHashMap<>());
+    private final ValueDictionary<PaymentMethod> paymentMethods = new ValueDictionary<>(new IdentityHashMap<>());
+    private final ValueDictionary<ShipmentMethod> shipmentMethods = new ValueDictionary<>(new IdentityHashMap<>());
+    private final ValueDictionary<TaxPolicy> taxPolicies = new ValueDictionary<>(new IdentityHashMap<>());
+    private final Map<String, BitSet> productIdsByName = new HashMap<>();
+    private final Columns columns = new Columns();
+
+    private int size;
+    private long[] idsHigh = new long[16];
+    private long[] idsLow = new long[16];
+    private long[] creationSeconds = new long[16];
+    private int[] creationNanos = new int[16];
+    private long[] totalPrices = new long[16];
+    private int[] generalDiscountIds = new int[16];
+    private int[] recipientNameIds = new int[16];
+    private int[] senderAddressIds = new int[16];
+    private int[] recipientAddressIds = new int[16];
+    private int[] paymentMethodIds = new int[16];
+    private int[] shipmentMethodIds = new int[16];
+    private int[] taxPolicyIds = new int[16];
+    private byte[] flags = new byte[16];
+    // products of row r are at productOffsets[r] until productOffsets[r + 1]
+    private int[] productOffsets = new int[17];
+    private int[] productIds = new int[16];
+    private int[] productDiscountIds = new int[16];
+
+    public void addOrder(Order order) {
+        Objects.requireNonNull(order);
+        lock.writeLock().lock();
+        try {
+            if(size + 1 == productOffsets.length) growRows();
+            int row = size;
+            idsHigh[row] = order.getId().getMostSignificantBits();
+            idsLow[row] = order.getId().getLeastSignificantBits();
+            creationSeconds[row] = order.getCreationTime().getEpochSecond();
+            creationNanos[row] = order.getCreationTime().getNano();
+            totalPrices[row] = Money.minorUnitsOf(order.getTotalPrice());
+            generalDiscountIds[row] = discounts.encode(order.getGeneralDiscount());
+            paymentMethodIds[row] = paymentMethods.encode(order.getPaymentMethod());
+            shipmentMethodIds[row] = shipmentMethods.encode(order.getShipmentMethod());
+            taxPolicyIds[row] = taxPolicies.encode(order.getTaxPolicy());
+            byte rowFlags = order.isPaid() ? PAID : 0;
+            Shipment shipment = order.getShipment();
+            if(shipment == null) {
+                recipientNameIds[row] = -1;
+                senderAddressIds[row] = -1;
+                recipientAddressIds[row] = -1;
+            } else {
+                rowFlags |= HAS_SHIPMENT;
+                if(shipment.isShipped()) rowFlags |= SHIPPED;
+                Address recipient = shipment.getRecipientAddress();
+                recipientNameIds[row] = recipientNames.encode(recipient == null ? null : recipient.getName());
+                senderAddressIds[row] = addresses.encode(shipment.getSenderAddress());
+                recipientAddressIds[row] = addresses.encode(recipient);
+            }
+            flags[row] = rowFlags;
+            appendProducts(order);
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void appendProducts(Order order) {
+        int offset = productOffsets[size];
+        List<Product> orderProducts = order.getProducts();
+        if(offset + orderProducts.size() > productIds.length) {
+            int capacity = Math.max(productIds.length * 2, offset + orderProducts.size());
+            productIds = Arrays.copyOf(productIds, capacity);
+            productDiscountIds = Arrays.copyOf(productDiscountIds, capacity);
+        }
+        for(Product product: orderProducts) {
+            int productId = products.encode(product);
+            if(productId == products.size() - 1) {
+                productIdsByName.computeIfAbsent(product.getName(), name -> new BitSet()).set(productId);
+            }
+            productIds[offset] = productId;
+            productDiscountIds[offset] = discounts.encode(order.getDiscount(product));
+            offset++;
+        }
+        productOffsets[size + 1] = offset;
+    }
+
+    private void growRows() {
+        int capacity = size * 2;
+        idsHigh = Arrays.copyOf(idsHigh, capacity);
+        idsLow = Arrays.copyOf(idsLow, capacity);
+        creationSeconds = Arrays.copyOf(creationSeconds, capacity);
+        creationNanos = Arrays.copyOf(creationNanos, capacity);
+        totalPrices = Arrays.copyOf(totalPrices, capacity);
+        generalDiscountIds = Arrays.copyOf(generalDiscountIds, capacity);
+        recipientNameIds = Arrays.copyOf(recipientNameIds, capacity);
+        senderAddressIds = Arrays.copyOf(senderAddressIds, capacity);
+        recipientAddressIds = Arrays.copyOf(recipientAddressIds, capacity);
+        paymentMethodIds = Arrays.copyOf(paymentMethodIds, capacity);
+        shipmentMethodIds = Arrays.copyOf(shipmentMethodIds, capacity);
+        taxPolicyIds = Arrays.copyOf(taxPolicyIds, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        productOffsets = Arrays.copyOf(productOffsets, capacity + 1);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Order> getOrders() {
+        lock.readLock().lock();
+        try {
+            List<Order> orders = new ArrayList<>(size);
+            for(int row = 0; row < size; row++) orders.add(rebuild(row));
+            return Collections.unmodifiableList(orders);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Order> searchOrders(SearchStrategy strategy) {
+        lock.readLock().lock();
+        try {
+            IntPredicate predicate = strategy instanceof ColumnarSearchStrategy
+                    ? ((ColumnarSearchStrategy) strategy).compile(columns) : null;
+            List<Order> result = new ArrayList<>();
+            for(int row = 0; row < size; row++) {
+                if(predicate != null) {
+                    if(predicate.test(row)) result.add(rebuild(row));
+                } else {
+                    Order order = rebuild(row);
+                    if(strategy.filter(order)) result.add(order);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Order rebuild(int row) {
+        int from = productOffsets[row];
+        int to = productOffsets[row + 1];
+        List<Product> orderProducts = new ArrayList<>(to - from);
+        for(int i = from; i < to; i++) orderProducts.add(products.decode(productIds[i]));
+        Order order = new Order(orderProducts, new UUID(idsHigh[row], idsLow[row]), (flags[row] & PAID) != 0,
+                Instant.ofEpochSecond(creationSeconds[row], creationNanos[row]));
+        order.setTaxPolicy(taxPolicies.decode(taxPolicyIds[row]));
+        for(int i = from; i < to; i++) {
+            BigDecimal discount = discounts.decode(productDiscountIds[i]);
+            if(discount.signum() != 0) order.setDiscount(orderProducts.get(i - from), discount);
+        }
+        BigDecimal generalDiscount = discounts.decode(generalDiscountIds[row]);
+        if(generalDiscount.signum() != 0) order.setGeneralDiscount(generalDiscount);
+        if((flags[row] & HAS_SHIPMENT) != 0) {
+            Shipment shipment = new Shipment(addresses.decode(senderAddressIds[row]), addresses.decode(recipientAddressIds[row]));
+            shipment.setShipped((flags[row] & SHIPPED) != 0);
+            order.setShipment(shipment);
+        }
+        order.setPaymentMethod(paymentMethods.decode(paymentMethodIds[row]));
+        order.setShipmentMethod(shipmentMethods.decode(shipmentMethodIds[row]));
+        return order;
+    }
+
+    // called with the read lock held
+    private class Columns implements OrderColumns {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long getTotalPriceMinorUnits(int row) {
+            return totalPrices[row];
+        }
+
+        @Override
+        public long getCreationEpochSecond(int row) {
+            return creationSeconds[row];
+        }
+
+        @Override
+        public int getCreationNano(int row) {
+            return creationNanos[row];
+        }
+
+        @Override
+        public int getRecipientNameId(int row) {
+            return recipientNameIds[row];
+        }
+
+        @Override
+        public int findRecipientNameId(String recipientName) {
+            return recipientNames.find(recipientName);
+        }
+
+        @Override
+        public int getProductCount(int row) {
+            return productOffsets[row + 1] - productOffsets[row];
+        }
+
+        @Override
+        public int getProductId(int row, int index) {
+            return productIds[productOffsets[row] + index];
+        }
+
+        @Override
+        public BitSet findProductIdsByName(String productName) {
+            BitSet productIds = productIdsByName.get(productName);
+            return productIds == null ? new BitSet() : (BitSet) productIds.clone();
+        }
+    }
+
+    // maps values to consecutive ids, null is always -1
+    private static class ValueDictionary<T> {
+        private final Map<T, Integer> ids;
+        private final List<T> values = new ArrayList<>();
+
+        ValueDictionary(Map<T, Integer> ids) {
+            this.ids = ids;
+        }
+
+        int encode(T value) {
+            if(value == null) return -1;
+            Integer id = ids.get(value);
+            if(id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        int find(T value) {
+            Integer id = value == null ? null : ids.get(value);
+            return id == null ? -1 : id;
+        }
+
+        T decode(int id) {
+            return id < 0 ? null : values.get(id);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+}
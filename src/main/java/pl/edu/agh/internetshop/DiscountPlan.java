@@ -0,0 +1,14 @@
+package pl.edu.agh.internetshop;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+// General discounts to give orders in a repricing campaign; null keeps the order's current discount.
+public interface DiscountPlan {
+    BigDecimal getGeneralDiscount(Order order);
+
+    static DiscountPlan uniform(BigDecimal generalDiscount) {
+        Objects.requireNonNull(generalDiscount);
+        return order -> generalDiscount;
+    }
+}
@@ -0,0 +1,106 @@
+package pl.edu.agh.internetshop;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+
+/**
+ * Canonical instances of products and addresses, so that equal values shared by many orders are
+ * kept in memory once. Orders intern their products when they are created, and
+ * {@link OrderHistory#addOrder(Order)} interns the addresses of the order's shipment.
+ * <p>
+ * Interned values are held weakly and dropped from the registry once no order uses them. Each
+ * registry holds at most {@link #MAX_SIZE} values. When it is full, interning silently degrades:
+ * values already interned are still found, but new values are returned as they are, without an
+ * error, so equal values passed in meanwhile stay separate instances for good. Interning new values
+ * resumes once values no order uses any more have been collected and make room.
+ */
+public final class InterningRegistry {
+    public static final int MAX_SIZE = 1 << 20;
+
+    private static final Interner<Product> PRODUCTS = new Interner<>(MAX_SIZE);
+    private static final Interner<Address> ADDRESSES = new Interner<>(MAX_SIZE);
+
+    private InterningRegistry() {
+    }
+
+    public static Product intern(Product product) {
+        return PRODUCTS.intern(product);
+    }
+
+    public static Address intern(Address address) {
+        return ADDRESSES.intern(address);
+    }
+
+    static final class Interner<T> {
+        private final ConcurrentMap<Entry<T>, Entry<T>> entries = new ConcurrentHashMap<>();
+        private final ReferenceQueue<T> cleared = new ReferenceQueue<>();
+        private final int maxSize;
+        // creates the entries of interned values, tests clear them instead of the garbage collector
+        private final BiFunction<T, ReferenceQueue<T>, Entry<T>> newEntry;
+
+        Interner(int maxSize) {
+            this(maxSize, Entry::new);
+        }
+
+        Interner(int maxSize, BiFunction<T, ReferenceQueue<T>, Entry<T>> newEntry) {
+            this.maxSize = maxSize;
+            this.newEntry = newEntry;
+        }
+
+        T intern(T value) {
+            if(value == null) return null;
+            expungeCleared();
+            Entry<T> existing = entries.get(new Entry<>(value, null));
+            T canonical = existing == null ? null : existing.get();
+            if(canonical != null) return canonical;
+            if(entries.size() >= maxSize) return value;
+            Entry<T> entry = newEntry.apply(value, cleared);
+            while(true) {
+                existing = entries.putIfAbsent(entry, entry);
+                if(existing == null) return value;
+                canonical = existing.get();
+                if(canonical != null) return canonical;
+                // cleared right after the lookup, equal to nothing but itself from now on
+                entries.remove(existing, existing);
+            }
+        }
+
+        int size() {
+            expungeCleared();
+            return entries.size();
+        }
+
+        private void expungeCleared() {
+            Object reference;
+            while((reference = cleared.poll()) != null) entries.remove(reference, reference);
+        }
+    }
+
+    // equal to entries with equal values, a cleared entry is only equal to itself
+    static final class Entry<T> extends WeakReference<T> {
+        private final int hash;
+
+        Entry(T value, ReferenceQueue<T> queue) {
+            super(value, queue);
+            this.hash = value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Entry)) return false;
+            Entry<?> other = (Entry<?>) o;
+            if(hash != other.hash) return false;
+            T value = get();
+            return value != null && value.equals(other.get());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package pl.edu.agh.internetshop;
+
+// a distinct product of an order and the number of times it was ordered
+public final class LineItem {
+    private final Product product;
+    private final int quantity;
+
+    LineItem(Product product, int quantity) {
+        this.product = product;
+        this.quantity = quantity;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+}
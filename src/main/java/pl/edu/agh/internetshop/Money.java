@@ -0,0 +1,76 @@
+package pl.edu.agh.internetshop;
+
+import java.math.BigDecimal;
+
+public final class Money implements Comparable<Money> {
+    public static final Money ZERO = new Money(0);
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    public static Money ofMinorUnits(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    /**
+     * Converts an amount which has at most {@link Product#PRICE_PRECISION} fraction digits.
+     *
+     * @throws ArithmeticException if the amount would have to be rounded or does not fit into a long
+     */
+    public static Money of(BigDecimal amount) {
+        return ofMinorUnits(minorUnitsOf(amount));
+    }
+
+    static long minorUnitsOf(BigDecimal amount) {
+        return amount.setScale(Product.PRICE_PRECISION, BigDecimal.ROUND_UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Money add(Money other) {
+        return ofMinorUnits(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money subtract(Money other) {
+        return ofMinorUnits(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public Money multiply(Rate rate) {
+        return ofMinorUnits(rate.applyTo(minorUnits));
+    }
+
+    public Money multiply(BigDecimal rate) {
+        return multiply(Rate.of(rate));
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, Product.PRICE_PRECISION);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return minorUnits == ((Money) o).minorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
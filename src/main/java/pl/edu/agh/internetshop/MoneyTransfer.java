@@ -8,7 +8,8 @@ public class MoneyTransfer {
     private final String ownerDetails;
     private final String description;
     private final int amount;
-    private boolean committed;
+    // set by payment threads
+    private volatile boolean committed;
 
     public MoneyTransfer(BigInteger accountNumber, String ownerDetails, String description, int amount) {
         this.accountNumber = accountNumber;
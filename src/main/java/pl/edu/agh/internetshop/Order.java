@@ -1,32 +1,89 @@
 package pl.edu.agh.internetshop;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class Order {
-    private static final BigDecimal TAX_VALUE = BigDecimal.valueOf(1.23);
+    private static final Consumer<?>[] NO_LISTENERS = new Consumer<?>[0];
     private BigDecimal generalDiscount = BigDecimal.ZERO;
-    private final Map<Product, BigDecimal> productsDiscounts = new HashMap<>();
 	private final UUID id;
+    private final Instant creationTime;
     private final List<Product> products;
+    // equal products are aggregated into line items, prices are computed per line item
+    private final List<LineItem> lineItems;
+    private final Map<Product, Integer> lineIndexes;
+    private final BigDecimal[] discounts;
+    // rates of 1 - discount, dropped when the discount changes
+    private final Rate[] discountRates;
     private boolean paid;
     private Shipment shipment;
     private ShipmentMethod shipmentMethod;
     private PaymentMethod paymentMethod;
+    private TaxPolicy taxPolicy = TaxPolicy.DEFAULT;
+    // prices are computed lazily, discounted ones are dropped whenever a discount changes
+    private BigDecimal price;
+    private BigDecimal priceWithTaxes;
+    private BigDecimal priceWithDiscounts;
+    private BigDecimal totalPrice;
+    // added rarely and read on every change; copied on write under the lock of the order
+    private volatile Consumer<Order>[] priceChangeListeners = noListeners();
+    private volatile Consumer<Order>[] shipmentChangeListeners = noListeners();
 
     public Order(List<Product> products) {
-        this.products = Objects.requireNonNull(products);
+        this(products, Clock.systemUTC());
+    }
+
+    public Order(List<Product> products, Clock clock) {
+        this(products, UUID.randomUUID(), false, clock.instant());
+    }
+
+    // restores an order kept outside of the heap, e.g. in ColumnarOrderHistory
+    Order(List<Product> products, UUID id, boolean paid, Instant creationTime) {
+        Objects.requireNonNull(products);
         if(products.size() == 0) throw new IllegalArgumentException("Offer must contain at least one product");
-        if(products.contains(null)) throw new IllegalArgumentException("Product list cannot contain nulls");
-        for(Product product: products) productsDiscounts.put(product, BigDecimal.ZERO);
-        id = UUID.randomUUID();
-        paid = false;
+        this.products = new ArrayList<>(products.size());
+        this.lineIndexes = new HashMap<>();
+        List<Product> distinctProducts = new ArrayList<>();
+        int[] quantities = new int[products.size()];
+        for(Product product: products) {
+            if(product == null) throw new IllegalArgumentException("Product list cannot contain nulls");
+            Integer line = lineIndexes.get(product);
+            if(line == null) {
+                line = distinctProducts.size();
+                product = InterningRegistry.intern(product);
+                lineIndexes.put(product, line);
+                distinctProducts.add(product);
+            } else {
+                product = distinctProducts.get(line);
+            }
+            this.products.add(product);
+            quantities[line]++;
+        }
+        List<LineItem> lineItems = new ArrayList<>(distinctProducts.size());
+        for(int line = 0; line < distinctProducts.size(); line++) {
+            lineItems.add(new LineItem(distinctProducts.get(line), quantities[line]));
+        }
+        this.lineItems = Collections.unmodifiableList(lineItems);
+        this.discounts = new BigDecimal[lineItems.size()];
+        Arrays.fill(discounts, BigDecimal.ZERO);
+        this.discountRates = new Rate[lineItems.size()];
+        this.id = Objects.requireNonNull(id);
+        this.paid = paid;
+        this.creationTime = Objects.requireNonNull(creationTime);
     }
 
     public UUID getId() {
         return id;
     }
 
+    public Instant getCreationTime() {
+        return creationTime;
+    }
+
     public void setPaymentMethod(PaymentMethod paymentMethod) {
         this.paymentMethod = paymentMethod;
     }
@@ -41,38 +98,236 @@ public class Order {
 
     public boolean isPaid() { return paid; }
 
+    // records the result of a payment committed through another instance of this order
+    void setPaid(boolean paid) { this.paid = paid; }
+
     public Shipment getShipment() {
         return shipment;
     }
 
     public BigDecimal getPrice() {
+        if(price == null) price = computePrice();
+        return price;
+    }
+
+    private BigDecimal computePrice() {
         BigDecimal price = BigDecimal.ZERO;
-        for(Product product: products) {
-            price = price.add(product.getPrice());
+        for(LineItem lineItem: lineItems) {
+            price = price.add(times(lineItem.getProduct().getPrice(), lineItem.getQuantity()));
         }
         return price;
     }
 
+    private static BigDecimal times(BigDecimal price, int quantity) {
+        return quantity == 1 ? price : price.multiply(BigDecimal.valueOf(quantity));
+    }
+
+    private Rate getDiscountRate(int line) {
+        Rate rate = discountRates[line];
+        if(rate == null) discountRates[line] = rate = Rate.of(BigDecimal.ONE.subtract(discounts[line]));
+        return rate;
+    }
+
     public BigDecimal getPriceWithDiscounts() {
+        if(priceWithDiscounts == null) priceWithDiscounts = computePriceWithDiscounts();
+        return priceWithDiscounts;
+    }
+
+    private BigDecimal computePriceWithDiscounts() {
         BigDecimal price = BigDecimal.ZERO;
-        for(Product product: products) {
-            BigDecimal discount = BigDecimal.ONE.subtract(productsDiscounts.get(product));
-            price = price.add(product.getPrice().multiply(discount).setScale(Product.PRICE_PRECISION, Product.ROUND_STRATEGY));
+        for(int line = 0; line < lineItems.size(); line++) {
+            price = price.add(discountedPrice(line));
         }
         BigDecimal discount = BigDecimal.ONE.subtract(this.generalDiscount);
         return price.multiply(discount).setScale(Product.PRICE_PRECISION, Product.ROUND_STRATEGY);
     }
 
+    // taxes are computed in minor units, BigDecimal is only used for prices with more fraction digits
     public BigDecimal getPriceWithTaxes() {
-        return getPrice().multiply(TAX_VALUE).setScale(Product.PRICE_PRECISION, Product.ROUND_STRATEGY);
+        if(priceWithTaxes == null) {
+            try {
+                priceWithTaxes = getPriceWithTaxesAsMoney().toBigDecimal();
+            } catch (ArithmeticException e) {
+                priceWithTaxes = computePriceWithTaxes();
+            }
+        }
+        return priceWithTaxes;
+    }
+
+    // price of a line item after its product discount
+    private BigDecimal discountedPrice(int line) {
+        LineItem lineItem = lineItems.get(line);
+        BigDecimal discount = BigDecimal.ONE.subtract(discounts[line]);
+        BigDecimal price = lineItem.getProduct().getPrice().multiply(discount).setScale(Product.PRICE_PRECISION, Product.ROUND_STRATEGY);
+        return times(price, lineItem.getQuantity());
+    }
+
+    private BigDecimal computePriceWithTaxes() {
+        Map<Rate, BigDecimal> netPrices = new HashMap<>();
+        for(LineItem lineItem: lineItems) {
+            Product product = lineItem.getProduct();
+            netPrices.merge(taxPolicy.getTaxRate(product), times(product.getPrice(), lineItem.getQuantity()), BigDecimal::add);
+        }
+        BigDecimal price = BigDecimal.ZERO;
+        for(Map.Entry<Rate, BigDecimal> netPrice: netPrices.entrySet()) {
+            price = price.add(netPrice.getValue().multiply(netPrice.getKey().toBigDecimal()).setScale(Product.PRICE_PRECISION, Product.ROUND_STRATEGY));
+        }
+        return price;
     }
 
     public BigDecimal getTotalPrice() {
-        return getPriceWithDiscounts().multiply(TAX_VALUE).setScale(Product.PRICE_PRECISION, Product.ROUND_STRATEGY);
+        if(totalPrice == null) {
+            try {
+                totalPrice = getTotalPriceAsMoney().toBigDecimal();
+            } catch (ArithmeticException e) {
+                totalPrice = computeTotalPrice(generalDiscount);
+            }
+        }
+        return totalPrice;
+    }
+
+    // the total price under the given general discount, also used by BatchPricingEngine
+    BigDecimal computeTotalPrice(BigDecimal generalDiscount) {
+        Map<Rate, BigDecimal> netPrices = new HashMap<>();
+        for(int line = 0; line < lineItems.size(); line++) {
+            netPrices.merge(taxPolicy.getTaxRate(lineItems.get(line).getProduct()), discountedPrice(line), BigDecimal::add);
+        }
+        BigDecimal discount = BigDecimal.ONE.subtract(generalDiscount);
+        BigDecimal price = BigDecimal.ZERO;
+        for(Map.Entry<Rate, BigDecimal> netPrice: netPrices.entrySet()) {
+            BigDecimal discounted = netPrice.getValue().multiply(discount).setScale(Product.PRICE_PRECISION, Product.ROUND_STRATEGY);
+            price = price.add(discounted.multiply(netPrice.getKey().toBigDecimal()).setScale(Product.PRICE_PRECISION, Product.ROUND_STRATEGY));
+        }
+        return price;
+    }
+
+    // Money variants give the same values as the BigDecimal ones, but need product prices with at most
+    // Product.PRICE_PRECISION fraction digits
+    public Money getPriceAsMoney() {
+        long price = 0;
+        for(LineItem lineItem: lineItems) {
+            price = Math.addExact(price, Math.multiplyExact(Money.minorUnitsOf(lineItem.getProduct().getPrice()), lineItem.getQuantity()));
+        }
+        return Money.ofMinorUnits(price);
+    }
+
+    public Money getPriceWithDiscountsAsMoney() {
+        long price = 0;
+        for(int line = 0; line < lineItems.size(); line++) {
+            price = Math.addExact(price, discountedMinorUnits(line));
+        }
+        return Money.ofMinorUnits(price).multiply(BigDecimal.ONE.subtract(this.generalDiscount));
+    }
+
+    // products are taxed in groups of equal tax rates, see TaxBreakdown
+    public Money getPriceWithTaxesAsMoney() {
+        TaxBreakdown breakdown = new TaxBreakdown();
+        for(LineItem lineItem: lineItems) {
+            Product product = lineItem.getProduct();
+            breakdown.add(taxPolicy.getTaxRate(product), Math.multiplyExact(Money.minorUnitsOf(product.getPrice()), lineItem.getQuantity()));
+        }
+        return Money.ofMinorUnits(breakdown.taxed());
+    }
+
+    public Money getTotalPriceAsMoney() {
+        return Money.ofMinorUnits(getTaxBreakdown().taxed(Rate.of(BigDecimal.ONE.subtract(generalDiscount))));
+    }
+
+    // net prices after product discounts, throws ArithmeticException like the Money variants
+    private TaxBreakdown getTaxBreakdown() {
+        TaxBreakdown breakdown = new TaxBreakdown();
+        for(int line = 0; line < lineItems.size(); line++) {
+            breakdown.add(taxPolicy.getTaxRate(lineItems.get(line).getProduct()), discountedMinorUnits(line));
+        }
+        return breakdown;
+    }
+
+    // also used by BatchPricingEngine
+    long discountedMinorUnits(int line) {
+        LineItem lineItem = lineItems.get(line);
+        long price = getDiscountRate(line).applyTo(Money.minorUnitsOf(lineItem.getProduct().getPrice()));
+        return Math.multiplyExact(price, lineItem.getQuantity());
+    }
+
+    public TaxPolicy getTaxPolicy() {
+        return taxPolicy;
+    }
+
+    public void setTaxPolicy(TaxPolicy taxPolicy) {
+        this.taxPolicy = Objects.requireNonNull(taxPolicy);
+        priceWithTaxes = null;
+        invalidateDiscountedPrices();
+    }
+
+    // a listener equal to one already added is not added again; thread-safe
+    public synchronized void addPriceChangeListener(Consumer<Order> listener) {
+        priceChangeListeners = withListener(priceChangeListeners, Objects.requireNonNull(listener));
+    }
+
+    public synchronized void removePriceChangeListener(Consumer<Order> listener) {
+        priceChangeListeners = withoutListeners(priceChangeListeners, listener::equals);
+    }
+
+    // called after setShipment, e.g. to index the new recipient; like price change listeners
+    public synchronized void addShipmentChangeListener(Consumer<Order> listener) {
+        shipmentChangeListeners = withListener(shipmentChangeListeners, Objects.requireNonNull(listener));
+    }
+
+    public synchronized void removeShipmentChangeListener(Consumer<Order> listener) {
+        shipmentChangeListeners = withoutListeners(shipmentChangeListeners, listener::equals);
+    }
+
+    // drops listeners which are no longer needed, e.g. ones of histories which were collected
+    synchronized void removeChangeListeners(Predicate<Consumer<Order>> filter) {
+        priceChangeListeners = withoutListeners(priceChangeListeners, filter);
+        shipmentChangeListeners = withoutListeners(shipmentChangeListeners, filter);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Consumer<Order>[] noListeners() {
+        return (Consumer<Order>[]) NO_LISTENERS;
+    }
+
+    private static Consumer<Order>[] withListener(Consumer<Order>[] listeners, Consumer<Order> listener) {
+        for(Consumer<Order> added: listeners) {
+            if(added.equals(listener)) return listeners;
+        }
+        Consumer<Order>[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+        copy[listeners.length] = listener;
+        return copy;
+    }
+
+    private static Consumer<Order>[] withoutListeners(Consumer<Order>[] listeners, Predicate<Consumer<Order>> filter) {
+        Consumer<Order>[] copy = noListeners();
+        for(Consumer<Order> listener: listeners) {
+            if(filter.test(listener)) continue;
+            copy = Arrays.copyOf(copy, copy.length + 1);
+            copy[copy.length - 1] = listener;
+        }
+        return copy.length == listeners.length ? listeners : copy;
+    }
+
+    private void notifyListeners(Consumer<Order>[] listeners) {
+        for(Consumer<Order> listener: listeners) listener.accept(this);
+    }
+
+    private void invalidateDiscountedPrices() {
+        invalidateDiscountedPrices(null);
+    }
+
+    // the total price is cached before listeners are notified, so they can read it
+    private void invalidateDiscountedPrices(BigDecimal totalPrice) {
+        priceWithDiscounts = null;
+        this.totalPrice = totalPrice;
+        notifyListeners(priceChangeListeners);
     }
 
     public List<Product> getProducts() {
-        return products;
+        return Collections.unmodifiableList(products);
+    }
+
+    public List<LineItem> getLineItems() {
+        return lineItems;
     }
 
     public ShipmentMethod getShipmentMethod() {
@@ -95,9 +350,10 @@ public class Order {
 
     public void setShipment(Shipment shipment) {
         this.shipment = shipment;
+        notifyListeners(shipmentChangeListeners);
     }
 
-    private boolean isCorrectDiscountValue(BigDecimal discount) {
+    static boolean isCorrectDiscountValue(BigDecimal discount) {
         return discount.compareTo(BigDecimal.ZERO) > 0 && discount.compareTo(BigDecimal.ONE) < 0;
     }
 
@@ -108,15 +364,28 @@ public class Order {
     public void setGeneralDiscount(BigDecimal generalDiscount) {
         if(!isCorrectDiscountValue(generalDiscount)) throw new IllegalArgumentException("Discount must be in range 0 to 1");
         this.generalDiscount = generalDiscount;
+        invalidateDiscountedPrices();
+    }
+
+    // sets the discount with the total price it gives, already computed by BatchPricingEngine
+    void setGeneralDiscount(BigDecimal generalDiscount, Money totalPrice) {
+        if(!isCorrectDiscountValue(generalDiscount)) throw new IllegalArgumentException("Discount must be in range 0 to 1");
+        this.generalDiscount = generalDiscount;
+        invalidateDiscountedPrices(totalPrice.toBigDecimal());
     }
 
     public BigDecimal getDiscount(Product product) {
-        return productsDiscounts.get(product);
+        Integer line = lineIndexes.get(product);
+        return line == null ? null : discounts[line];
     }
 
     public void setDiscount(Product product, BigDecimal discount) {
         if(!isCorrectDiscountValue(discount)) throw new IllegalArgumentException("Discount must be in range 0 to 1");
-        productsDiscounts.put(product, discount);
+        Integer line = lineIndexes.get(product);
+        if(line == null) throw new IllegalArgumentException("Product is not in the order");
+        discounts[line] = discount;
+        discountRates[line] = null;
+        invalidateDiscountedPrices();
     }
 
     public String getRecipientName() {
@@ -0,0 +1,158 @@
+package pl.edu.agh.internetshop;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static pl.edu.agh.internetshop.OrderEncoder.*;
+
+/**
+ * Reads values written by {@link OrderEncoder}. Interned product names and cities are decoded to
+ * the same String instance every time they occur in the stream. Orders written in version 1 have no
+ * creation time and are read as created at {@link Instant#EPOCH}. Orders keep the tax rates of
+ * their products rather than their {@link TaxPolicy}, orders written before version 3 are taxed
+ * with {@link TaxPolicy#DEFAULT}.
+ */
+public class OrderDecoder {
+    private final List<String> interned = new ArrayList<>();
+
+    public void reset() {
+        interned.clear();
+    }
+
+    public Order decodeOrder(ByteBuffer in) {
+        return readOrder(in, readVersion(in));
+    }
+
+    public Product decodeProduct(ByteBuffer in) {
+        readVersion(in);
+        return readProduct(in);
+    }
+
+    public Shipment decodeShipment(ByteBuffer in) {
+        readVersion(in);
+        return readShipment(in);
+    }
+
+    public Address decodeAddress(ByteBuffer in) {
+        readVersion(in);
+        return readAddress(in);
+    }
+
+    public MoneyTransfer decodeMoneyTransfer(ByteBuffer in) {
+        readVersion(in);
+        BigInteger accountNumber = readBigInteger(in);
+        String ownerDetails = readString(in, false);
+        String description = readString(in, false);
+        int amount = (int) readSignedVarint(in);
+        MoneyTransfer transfer = new MoneyTransfer(accountNumber, ownerDetails, description, amount);
+        transfer.setCommitted((in.get() & COMMITTED) != 0);
+        return transfer;
+    }
+
+    private static byte readVersion(ByteBuffer in) {
+        byte version = in.get();
+        if(version < 1 || version > VERSION) throw new IllegalArgumentException("Unsupported format version: " + version);
+        return version;
+    }
+
+    private Order readOrder(ByteBuffer in, byte version) {
+        UUID id = new UUID(in.getLong(), in.getLong());
+        Instant creationTime = version < 2 ? Instant.EPOCH : Instant.ofEpochSecond(readSignedVarint(in), readUnsignedVarint(in));
+        byte flags = in.get();
+        BigDecimal generalDiscount = readDecimal(in);
+        int productCount = (int) readUnsignedVarint(in);
+        List<Product> products = new ArrayList<>(productCount);
+        BigDecimal[] discounts = new BigDecimal[productCount];
+        Map<Product, Rate> taxRates = new HashMap<>();
+        boolean defaultTaxRates = true;
+        for(int i = 0; i < productCount; i++) {
+            Product product = readProduct(in);
+            products.add(product);
+            discounts[i] = readDecimal(in);
+            if(version < 3) continue;
+            Rate taxRate = Rate.of(readDecimal(in));
+            defaultTaxRates &= taxRate.equals(TaxPolicy.DEFAULT.getTaxRate(product));
+            taxRates.put(product, taxRate);
+        }
+        Order order = new Order(products, id, (flags & PAID) != 0, creationTime);
+        if(!defaultTaxRates) order.setTaxPolicy(product -> taxRates.getOrDefault(product, TaxPolicy.DEFAULT.getTaxRate(product)));
+        for(int i = 0; i < productCount; i++) {
+            if(discounts[i].signum() != 0) order.setDiscount(products.get(i), discounts[i]);
+        }
+        if(generalDiscount.signum() != 0) order.setGeneralDiscount(generalDiscount);
+        if((flags & HAS_SHIPMENT) != 0) order.setShipment(readShipment(in));
+        return order;
+    }
+
+    private Product readProduct(ByteBuffer in) {
+        return new Product(readString(in, true), readDecimal(in));
+    }
+
+    private Shipment readShipment(ByteBuffer in) {
+        boolean shipped = (in.get() & SHIPPED) != 0;
+        Shipment shipment = new Shipment(readAddress(in), readAddress(in));
+        shipment.setShipped(shipped);
+        return shipment;
+    }
+
+    private Address readAddress(ByteBuffer in) {
+        if(in.get() == 0) return null;
+        return new Address(readString(in, false), readString(in, false), readString(in, false), readString(in, true));
+    }
+
+    private String readString(ByteBuffer in, boolean intern) {
+        long tag = readUnsignedVarint(in);
+        if(tag == NULL) return null;
+        if(tag >= REFERENCE) return interned.get((int) (tag - REFERENCE));
+        int length = (int) readUnsignedVarint(in);
+        String value;
+        if(in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        if(intern) interned.add(value);
+        return value;
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer in) {
+        long header = readSignedVarint(in);
+        int scale = (int) (header >> 1);
+        if((header & 1) == 0) return BigDecimal.valueOf(readSignedVarint(in), scale);
+        return new BigDecimal(readBigInteger(in), scale);
+    }
+
+    private static BigInteger readBigInteger(ByteBuffer in) {
+        int length = (int) readUnsignedVarint(in);
+        if(length == 0) return null;
+        byte[] bytes = new byte[length - 1];
+        in.get(bytes);
+        return new BigInteger(bytes);
+    }
+
+    static long readSignedVarint(ByteBuffer in) {
+        long value = readUnsignedVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long readUnsignedVarint(ByteBuffer in) {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if(b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
@@ -0,0 +1,174 @@
+package pl.edu.agh.internetshop;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes orders, products, shipments, addresses and money transfers in a compact binary format
+ * read by {@link OrderDecoder}. Every top-level value starts with {@link #VERSION}; lengths and
+ * counts are varints. Product names and cities are interned: a name seen before in this stream is
+ * written as a reference, so an encoder and its decoder have to see the same sequence of values
+ * (call {@link #reset()} on both to start a new stream).
+ * <p>
+ * When the buffer is too small a {@link java.nio.BufferOverflowException} is thrown and the encoder
+ * has to be reset, as its string table may already contain names which were not written.
+ */
+public class OrderEncoder {
+    // version 2 added the creation time of orders, version 3 the tax rate of every product
+    public static final byte VERSION = 3;
+
+    static final int NULL = 0;
+    static final int LITERAL = 1;
+    static final int REFERENCE = 2;
+    static final byte PAID = 1;
+    static final byte HAS_SHIPMENT = 2;
+    static final byte SHIPPED = 4;
+    static final byte COMMITTED = 1;
+
+    private final Map<String, Integer> interned = new HashMap<>();
+
+    public void reset() {
+        interned.clear();
+    }
+
+    public void encode(Order order, ByteBuffer out) {
+        out.put(VERSION);
+        writeOrder(order, out);
+    }
+
+    public void encode(Product product, ByteBuffer out) {
+        out.put(VERSION);
+        writeProduct(product, out);
+    }
+
+    public void encode(Shipment shipment, ByteBuffer out) {
+        out.put(VERSION);
+        writeShipment(shipment, out);
+    }
+
+    public void encode(Address address, ByteBuffer out) {
+        out.put(VERSION);
+        writeAddress(address, out);
+    }
+
+    public void encode(MoneyTransfer transfer, ByteBuffer out) {
+        out.put(VERSION);
+        writeBigInteger(out, transfer.getAccountNumber());
+        writeString(out, transfer.getOwnerDetails(), false);
+        writeString(out, transfer.getDescription(), false);
+        writeSignedVarint(out, transfer.getAmount());
+        out.put(transfer.isCommitted() ? COMMITTED : 0);
+    }
+
+    private void writeOrder(Order order, ByteBuffer out) {
+        UUID id = order.getId();
+        out.putLong(id.getMostSignificantBits());
+        out.putLong(id.getLeastSignificantBits());
+        writeSignedVarint(out, order.getCreationTime().getEpochSecond());
+        writeUnsignedVarint(out, order.getCreationTime().getNano());
+        Shipment shipment = order.getShipment();
+        byte flags = order.isPaid() ? PAID : 0;
+        if(shipment != null) flags |= HAS_SHIPMENT;
+        out.put(flags);
+        writeDecimal(out, order.getGeneralDiscount());
+        writeUnsignedVarint(out, order.getProducts().size());
+        for(Product product: order.getProducts()) {
+            writeProduct(product, out);
+            writeDecimal(out, order.getDiscount(product));
+            writeDecimal(out, order.getTaxPolicy().getTaxRate(product).toBigDecimal());
+        }
+        if(shipment != null) writeShipment(shipment, out);
+    }
+
+    private void writeProduct(Product product, ByteBuffer out) {
+        writeString(out, product.getName(), true);
+        writeDecimal(out, product.getPrice());
+    }
+
+    private void writeShipment(Shipment shipment, ByteBuffer out) {
+        out.put(shipment.isShipped() ? SHIPPED : 0);
+        writeAddress(shipment.getSenderAddress(), out);
+        writeAddress(shipment.getRecipientAddress(), out);
+    }
+
+    private void writeAddress(Address address, ByteBuffer out) {
+        if(address == null) {
+            out.put((byte) 0);
+            return;
+        }
+        out.put((byte) 1);
+        writeString(out, address.getName(), false);
+        writeString(out, address.getStreetAndHomeNr(), false);
+        writeString(out, address.getPostalCode(), false);
+        writeString(out, address.getCity(), true);
+    }
+
+    private void writeString(ByteBuffer out, String value, boolean intern) {
+        if(value == null) {
+            writeUnsignedVarint(out, NULL);
+            return;
+        }
+        if(intern) {
+            Integer index = interned.get(value);
+            if(index != null) {
+                writeUnsignedVarint(out, REFERENCE + index);
+                return;
+            }
+            interned.put(value, interned.size());
+        }
+        writeUnsignedVarint(out, LITERAL);
+        if(isAscii(value)) {
+            writeUnsignedVarint(out, value.length());
+            for(int i = 0; i < value.length(); i++) out.put((byte) value.charAt(i));
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeUnsignedVarint(out, bytes.length);
+            out.put(bytes);
+        }
+    }
+
+    private static boolean isAscii(String value) {
+        for(int i = 0; i < value.length(); i++) {
+            if(value.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    // zigzag scale shifted left by one, lowest bit set when the unscaled value needs more than a long
+    private static void writeDecimal(ByteBuffer out, BigDecimal value) {
+        if(value.precision() <= 18) {
+            writeSignedVarint(out, (long) value.scale() << 1);
+            writeSignedVarint(out, value.scaleByPowerOfTen(value.scale()).longValueExact());
+        } else {
+            writeSignedVarint(out, ((long) value.scale() << 1) | 1);
+            writeBigInteger(out, value.unscaledValue());
+        }
+    }
+
+    private static void writeBigInteger(ByteBuffer out, BigInteger value) {
+        if(value == null) {
+            writeUnsignedVarint(out, 0);
+            return;
+        }
+        byte[] bytes = value.toByteArray();
+        writeUnsignedVarint(out, bytes.length + 1L);
+        out.put(bytes);
+    }
+
+    static void writeSignedVarint(ByteBuffer out, long value) {
+        writeUnsignedVarint(out, (value << 1) ^ (value >> 63));
+    }
+
+    static void writeUnsignedVarint(ByteBuffer out, long value) {
+        while((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+}
@@ -1,28 +1,503 @@
 package pl.edu.agh.internetshop;
 
+import pl.edu.agh.internetshop.metrics.Metrics;
+import pl.edu.agh.internetshop.search.IndexedSearchStrategy;
+import pl.edu.agh.internetshop.search.PostingList;
+import pl.edu.agh.internetshop.search.PrunableSearchStrategy;
+import pl.edu.agh.internetshop.search.SearchIndexes;
 import pl.edu.agh.internetshop.search.SearchStrategy;
+import pl.edu.agh.internetshop.search.SegmentSummary;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * Thread-safe history of orders. Orders are appended to one of several stripes, each guarded by
+ * its own lock, so concurrent writers rarely wait for each other. Readers never lock: they work on
+ * a snapshot of the orders published in every stripe when the read started, and get the orders
+ * back in insertion order. Scans can be run in parallel on a {@link ForkJoinPool}, either for the
+ * whole history or for a single search.
+ * <p>
+ * Large result sets can be read lazily with {@link #streamOrders(SearchStrategy)}, or a page at a
+ * time with {@link #searchOrders(SearchStrategy, int, String)}. Both check orders only as far as
+ * the results are consumed.
+ * <p>
+ * Every stripe is split into segments of {@link #SEGMENT_SIZE} orders, each summarized by Bloom
+ * filters over product and recipient names. Searches with a {@link PrunableSearchStrategy} skip the
+ * segments it rules out without checking their orders.
+ */
 public class OrderHistory {
-    private List<Order> orders;
+    public static final int SEGMENT_SIZE = 1024;
+
+    private final Stripe[] stripes;
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile ForkJoinPool searchPool;
+    private volatile Metrics metrics = Metrics.DISABLED;
 
     public OrderHistory() {
-        this.orders = new ArrayList<>();
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public OrderHistory(int concurrencyLevel) {
+        if(concurrencyLevel < 1) throw new IllegalArgumentException("Concurrency level must be positive");
+        this.stripes = new Stripe[Integer.highestOneBit(concurrencyLevel * 2 - 1)];
+        for(int i = 0; i < stripes.length; i++) stripes[i] = new Stripe();
     }
 
     public void addOrder(Order order) {
-        this.orders.add(Objects.requireNonNull(order));
+        Objects.requireNonNull(order);
+        Metrics metrics = this.metrics;
+        long start = metrics.start();
+        Shipment shipment = order.getShipment();
+        if(shipment != null) shipment.internAddresses();
+        Stripe stripe = lockStripe();
+        try {
+            stripe.append(order, sequence.getAndIncrement());
+        } finally {
+            stripe.lock.unlock();
+        }
+        metrics.stop("orderHistory.addOrder", start);
+    }
+
+    // tries the stripe of the current thread first and moves on to the next free one
+    private Stripe lockStripe() {
+        int home = (int) Thread.currentThread().getId() & (stripes.length - 1);
+        for(int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[(home + i) & (stripes.length - 1)];
+            if(stripe.lock.tryLock()) return stripe;
+        }
+        stripes[home].lock.lock();
+        return stripes[home];
     }
 
     public List<Order> getOrders() {
-        return orders;
+        Snapshot[] snapshots = snapshot();
+        return Collections.unmodifiableList(drain(new Cursor(snapshots, new PostingList[snapshots.length], null, null)));
+    }
+
+    public ForkJoinPool getSearchPool() {
+        return searchPool;
+    }
+
+    // null switches searches back to the calling thread
+    public void setSearchPool(ForkJoinPool searchPool) {
+        this.searchPool = searchPool;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    // records latencies of adds and searches, and the number of orders searches return
+    public void setMetrics(Metrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
     }
 
     public List<Order> searchOrders(SearchStrategy strategy) {
-        return orders.stream().filter(strategy::filter).collect(Collectors.toList());
+        return searchOrders(strategy, searchPool);
+    }
+
+    public List<Order> searchOrders(SearchStrategy strategy, ForkJoinPool pool) {
+        Metrics metrics = this.metrics;
+        long start = metrics.start();
+        Snapshot[] snapshots = snapshot();
+        PostingList[] candidates = lookup(snapshots, strategy);
+        List<Order> result;
+        if(candidates[0] != null || pool == null) {
+            result = drain(new Cursor(snapshots, candidates, strategy, null));
+        } else {
+            result = drain(new Cursor(snapshots, pool.invoke(new ParallelScan(snapshots, strategy)), null, null));
+        }
+        metrics.stop("orderHistory.search", start);
+        metrics.add("orderHistory.search.results", result.size());
+        return result;
+    }
+
+    // matching orders in insertion order, found as the stream is consumed; scans are never parallel
+    public Stream<Order> streamOrders(SearchStrategy strategy) {
+        Snapshot[] snapshots = snapshot();
+        Cursor cursor = new Cursor(snapshots, lookup(snapshots, strategy), strategy, null);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Returns at most {@code limit} matching orders following the ones returned with the given
+     * continuation token, or the first ones for a null token. The page's token continues the search
+     * after its last order, also when orders were added in the meantime: it holds the position
+     * reached in every stripe, so an order whose add was still in progress during a search is
+     * returned by one of the following pages, possibly after orders added later.
+     */
+    public OrderPage searchOrders(SearchStrategy strategy, int limit, String continuationToken) {
+        if(limit < 1) throw new IllegalArgumentException("Limit must be positive");
+        int[] positions = continuationToken == null ? null : OrderPage.parseToken(continuationToken, stripes.length);
+        Snapshot[] snapshots = snapshot();
+        Cursor cursor = new Cursor(snapshots, lookup(snapshots, strategy), strategy, positions);
+        List<Order> orders = new ArrayList<>(Math.min(limit, 64));
+        while(orders.size() < limit && cursor.hasNext()) orders.add(cursor.next());
+        return new OrderPage(orders, cursor.hasNext() ? OrderPage.token(cursor.positions()) : null);
+    }
+
+    private Snapshot[] snapshot() {
+        Snapshot[] snapshots = new Snapshot[stripes.length];
+        for(int i = 0; i < stripes.length; i++) {
+            stripes[i].reindexChanged();
+            snapshots[i] = new Snapshot(stripes[i]);
+        }
+        return snapshots;
+    }
+
+    // candidates of every stripe, or nulls when the strategy cannot use the indexes
+    private static PostingList[] lookup(Snapshot[] snapshots, SearchStrategy strategy) {
+        PostingList[] candidates = new PostingList[snapshots.length];
+        if(strategy instanceof IndexedSearchStrategy) {
+            for(int i = 0; i < snapshots.length; i++) {
+                candidates[i] = ((IndexedSearchStrategy) strategy).lookup(snapshots[i].stripe.indexes);
+                if(candidates[i] == null) return new PostingList[snapshots.length];
+            }
+        }
+        return candidates;
+    }
+
+    private static List<Order> drain(Cursor cursor) {
+        List<Order> result = new ArrayList<>();
+        while(cursor.hasNext()) result.add(cursor.next());
+        return result;
+    }
+
+    /**
+     * Merges matching orders of all stripes by their sequence numbers. Null candidates mean the
+     * whole stripe, a null strategy means every candidate matches.
+     */
+    private static class Cursor implements Iterator<Order> {
+        private final Snapshot[] snapshots;
+        private final PostingList[] candidates;
+        private final SearchStrategy strategy;
+        private final PrunableSearchStrategy pruning;
+        private final int[] cursors;
+        // stripe of the next order, -1 at the end, -2 when not looked for yet
+        private int next = -2;
+        private int nextPosition;
+
+        // starts in every stripe at the given position, or at the beginning for null positions
+        Cursor(Snapshot[] snapshots, PostingList[] candidates, SearchStrategy strategy, int[] positions) {
+            this.snapshots = snapshots;
+            this.candidates = candidates;
+            this.strategy = strategy;
+            this.pruning = strategy instanceof PrunableSearchStrategy ? (PrunableSearchStrategy) strategy : null;
+            this.cursors = new int[snapshots.length];
+            if(positions != null) {
+                for(int i = 0; i < snapshots.length; i++) cursors[i] = skipTo(i, Math.min(positions[i], snapshots[i].size));
+            }
+        }
+
+        // the position of every stripe before which all orders were returned or ruled out
+        int[] positions() {
+            int[] positions = new int[snapshots.length];
+            for(int i = 0; i < snapshots.length; i++) {
+                int cursor = cursors[i];
+                int position;
+                if(candidates[i] == null) {
+                    position = cursor;
+                } else {
+                    position = cursor < candidates[i].size() ? candidates[i].get(cursor) : Integer.MAX_VALUE;
+                }
+                positions[i] = Math.min(position, snapshots[i].size);
+            }
+            return positions;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if(next == -2) advance();
+            return next >= 0;
+        }
+
+        @Override
+        public Order next() {
+            if(!hasNext()) throw new NoSuchElementException();
+            Order order = snapshots[next].orders[nextPosition];
+            cursors[next]++;
+            next = -2;
+            return order;
+        }
+
+        private void advance() {
+            next = -1;
+            for(int i = 0; i < snapshots.length; i++) {
+                int position = nextMatch(i);
+                if(position >= 0 && (next < 0 || snapshots[i].sequences[position] < snapshots[next].sequences[nextPosition])) {
+                    next = i;
+                    nextPosition = position;
+                }
+            }
+        }
+
+        // advances the cursor to the next matching order of the stripe and returns its position, or -1
+        private int nextMatch(int stripe) {
+            Snapshot snapshot = snapshots[stripe];
+            while(true) {
+                int cursor = cursors[stripe];
+                int position;
+                if(candidates[stripe] == null) {
+                    if(cursor >= snapshot.size) return -1;
+                    position = cursor;
+                } else {
+                    if(cursor >= candidates[stripe].size()) return -1;
+                    position = candidates[stripe].get(cursor);
+                    if(position >= snapshot.size) return -1;
+                }
+                int segment = position / SEGMENT_SIZE;
+                if(pruning != null && !snapshot.mayMatch(segment, pruning)) {
+                    cursors[stripe] = skipTo(stripe, (segment + 1) * SEGMENT_SIZE);
+                    continue;
+                }
+                if(strategy == null || snapshot.matches(position, strategy)) return position;
+                cursors[stripe]++;
+            }
+        }
+
+        // the first cursor of the stripe at or past the position
+        private int skipTo(int stripe, int position) {
+            PostingList candidates = this.candidates[stripe];
+            if(candidates == null) return position;
+            int low = cursors[stripe];
+            int high = candidates.size();
+            while(low < high) {
+                int middle = (low + high) >>> 1;
+                if(candidates.get(middle) < position) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    // returns positions of the matching orders of every stripe
+    private static class ParallelScan extends RecursiveTask<PostingList[]> {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 2048;
+
+        private final Snapshot[] snapshots;
+        private final SearchStrategy strategy;
+
+        ParallelScan(Snapshot[] snapshots, SearchStrategy strategy) {
+            this.snapshots = snapshots;
+            this.strategy = strategy;
+        }
+
+        @Override
+        protected PostingList[] compute() {
+            boolean[][] matches = new boolean[snapshots.length][];
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            PrunableSearchStrategy pruning = strategy instanceof PrunableSearchStrategy ? (PrunableSearchStrategy) strategy : null;
+            for(int i = 0; i < snapshots.length; i++) {
+                Snapshot snapshot = snapshots[i];
+                matches[i] = new boolean[snapshot.size];
+                if(pruning == null) {
+                    tasks.add(new RangeScan(snapshot.orders, 0, snapshot.size, matches[i], strategy));
+                    continue;
+                }
+                for(int from = 0; from < snapshot.size; from += SEGMENT_SIZE) {
+                    if(!snapshot.mayMatch(from / SEGMENT_SIZE, pruning)) continue;
+                    tasks.add(new RangeScan(snapshot.orders, from, Math.min(from + SEGMENT_SIZE, snapshot.size), matches[i], strategy));
+                }
+            }
+            invokeAll(tasks);
+            PostingList[] result = new PostingList[snapshots.length];
+            for(int i = 0; i < snapshots.length; i++) {
+                result[i] = new PostingList();
+                for(int position = 0; position < matches[i].length; position++) {
+                    if(matches[i][position]) result[i].add(position);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static class RangeScan extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Order[] orders;
+        private final int from;
+        private final int to;
+        private final boolean[] matches;
+        private final SearchStrategy strategy;
+
+        RangeScan(Order[] orders, int from, int to, boolean[] matches, SearchStrategy strategy) {
+            this.orders = orders;
+            this.from = from;
+            this.to = to;
+            this.matches = matches;
+            this.strategy = strategy;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= ParallelScan.THRESHOLD) {
+                for(int i = from; i < to; i++) matches[i] = strategy.filter(orders[i]);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeScan(orders, from, middle, matches, strategy), new RangeScan(orders, middle, to, matches, strategy));
+        }
+    }
+
+    private static class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final SearchIndexes indexes = new SearchIndexes();
+        volatile Order[] orders = new Order[16];
+        volatile long[] sequences = new long[16];
+        volatile SegmentSummary[] summaries = new SegmentSummary[1];
+        volatile int size;
+        // orders whose price or shipment changed since the last search, re-indexed by the next one
+        final Queue<Reindexer> changed = new ConcurrentLinkedQueue<>();
+        final WeakReference<Stripe> reference = new WeakReference<>(this);
+
+        // called with the lock held; arrays are published before the size, like in PostingList
+        void append(Order order, long sequence) {
+            int position = size;
+            // added first, so changes made while the order is indexed are not missed
+            Reindexer reindexer = new Reindexer(reference, position);
+            order.removeChangeListeners(listener -> listener instanceof Reindexer && ((Reindexer) listener).isStale());
+            order.addPriceChangeListener(reindexer);
+            order.addShipmentChangeListener(reindexer);
+            Order[] orders = this.orders;
+            long[] sequences = this.sequences;
+            if(position == orders.length) {
+                orders = Arrays.copyOf(orders, position * 2);
+                sequences = Arrays.copyOf(sequences, position * 2);
+            }
+            orders[position] = order;
+            sequences[position] = sequence;
+            indexes.add(order, position);
+            SegmentSummary[] summaries = this.summaries;
+            int segment = position / SEGMENT_SIZE;
+            if(segment == summaries.length) summaries = Arrays.copyOf(summaries, segment * 2);
+            if(summaries[segment] == null) summaries[segment] = new SegmentSummary(SEGMENT_SIZE);
+            summaries[segment].add(order);
+            this.orders = orders;
+            this.sequences = sequences;
+            this.summaries = summaries;
+            this.size = position + 1;
+        }
+
+        // prices are computed here, not when they change, and once however often they changed
+        void reindexChanged() {
+            if(changed.isEmpty()) return;
+            lock.lock();
+            try {
+                Order[] orders = this.orders;
+                BitSet changedSegments = new BitSet();
+                Reindexer reindexer;
+                while((reindexer = changed.poll()) != null) {
+                    reindexer.queued = false;
+                    if(indexes.reindex(orders[reindexer.position], reindexer.position)) changedSegments.set(reindexer.position / SEGMENT_SIZE);
+                }
+                if(changedSegments.isEmpty()) return;
+                // replaced rather than updated, snapshots keep the summaries they were taken with
+                SegmentSummary[] summaries = this.summaries.clone();
+                for(int segment = changedSegments.nextSetBit(0); segment >= 0; segment = changedSegments.nextSetBit(segment + 1)) {
+                    SegmentSummary summary = new SegmentSummary(SEGMENT_SIZE);
+                    int end = Math.min(size, (segment + 1) * SEGMENT_SIZE);
+                    for(int position = segment * SEGMENT_SIZE; position < end; position++) summary.add(orders[position]);
+                    summaries[segment] = summary;
+                }
+                this.summaries = summaries;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * The price and shipment change listener of an order at one position of a stripe. It only
+     * queues the position, the stripe re-indexes it before the next search. It holds the stripe
+     * weakly, so orders do not keep the histories they were added to reachable; once the stripe is
+     * collected the listener removes itself.
+     */
+    private static class Reindexer implements Consumer<Order> {
+        private final WeakReference<Stripe> stripe;
+        final int position;
+        // a race only queues the position twice
+        volatile boolean queued;
+
+        Reindexer(WeakReference<Stripe> stripe, int position) {
+            this.stripe = stripe;
+            this.position = position;
+        }
+
+        boolean isStale() {
+            return stripe.get() == null;
+        }
+
+        @Override
+        public void accept(Order order) {
+            Stripe stripe = this.stripe.get();
+            if(stripe == null) {
+                order.removeChangeListeners(listener -> listener == this);
+            } else if(!queued) {
+                queued = true;
+                stripe.changed.add(this);
+            }
+        }
+    }
+
+    private static class Snapshot {
+        final Stripe stripe;
+        final int size;
+        final Order[] orders;
+        final long[] sequences;
+        final SegmentSummary[] summaries;
+        // a candidate is checked once even if the cursor asks for it again
+        private int checkedPosition = -1;
+        private boolean checkedResult;
+        private int checkedSegment = -1;
+        private boolean checkedSegmentResult;
+
+        Snapshot(Stripe stripe) {
+            this.stripe = stripe;
+            this.size = stripe.size;
+            this.orders = stripe.orders;
+            this.sequences = stripe.sequences;
+            this.summaries = stripe.summaries;
+        }
+
+        boolean mayMatch(int segment, PrunableSearchStrategy strategy) {
+            if(segment != checkedSegment) {
+                checkedSegment = segment;
+                checkedSegmentResult = strategy.mayMatch(summaries[segment]);
+            }
+            return checkedSegmentResult;
+        }
+
+        boolean matches(int position, SearchStrategy strategy) {
+            if(position != checkedPosition) {
+                checkedPosition = position;
+                checkedResult = strategy.filter(orders[position]);
+            }
+            return checkedResult;
+        }
     }
 }
@@ -0,0 +1,55 @@
+package pl.edu.agh.internetshop;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of search results of {@link OrderHistory}. The continuation token is null on the last
+ * page, otherwise it is passed to the next search to get the following page.
+ */
+public class OrderPage {
+    private final List<Order> orders;
+    private final String continuationToken;
+
+    OrderPage(List<Order> orders, String continuationToken) {
+        this.orders = Collections.unmodifiableList(orders);
+        this.continuationToken = continuationToken;
+    }
+
+    public List<Order> getOrders() {
+        return orders;
+    }
+
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public boolean hasMore() {
+        return continuationToken != null;
+    }
+
+    // the token is the position reached in every stripe of the history
+    static String token(int[] positions) {
+        StringBuilder token = new StringBuilder();
+        for(int i = 0; i < positions.length; i++) {
+            if(i > 0) token.append('.');
+            token.append(Integer.toString(positions[i], 36));
+        }
+        return token.toString();
+    }
+
+    static int[] parseToken(String token, int stripes) {
+        String[] parts = token.split("\\.", -1);
+        if(parts.length != stripes) throw new IllegalArgumentException("Incorrect continuation token: " + token);
+        int[] positions = new int[stripes];
+        try {
+            for(int i = 0; i < stripes; i++) {
+                positions[i] = Integer.parseInt(parts[i], 36);
+                if(positions[i] < 0) throw new IllegalArgumentException("Incorrect continuation token: " + token);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Incorrect continuation token: " + token, e);
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,188 @@
+package pl.edu.agh.internetshop;
+
+import pl.edu.agh.internetshop.search.CompositeSearchStrategy;
+import pl.edu.agh.internetshop.search.CreationTimeSearchStrategy;
+import pl.edu.agh.internetshop.search.SearchStrategy;
+import pl.edu.agh.internetshop.search.WrappingSearchStrategy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe order history split into partitions by the creation time of orders, one
+ * {@link OrderHistory} per partition (a day by default). Orders are returned partition by
+ * partition in time order, and in insertion order within a partition. Searches limited to a time
+ * range, either by a {@link CreationTimeSearchStrategy}, possibly wrapped in a
+ * {@link WrappingSearchStrategy}, or by
+ * {@link #searchOrders(SearchStrategy, Instant, Instant)}, only look into the partitions which
+ * overlap the range.
+ * <p>
+ * Partitions which are no longer written to can be compacted into a {@link ColumnarOrderHistory},
+ * which is smaller and faster to scan. Like all columnar histories, a compacted partition returns
+ * copies of its orders and does not see later changes of the added instances.
+ */
+public class PartitionedOrderHistory {
+    public static final Duration DEFAULT_PARTITION_DURATION = Duration.ofDays(1);
+
+    private final long partitionMillis;
+    private final NavigableMap<Long, Partition> partitions = new ConcurrentSkipListMap<>();
+
+    public PartitionedOrderHistory() {
+        this(DEFAULT_PARTITION_DURATION);
+    }
+
+    public PartitionedOrderHistory(Duration partitionDuration) {
+        this.partitionMillis = partitionDuration.toMillis();
+        if(partitionMillis < 1) throw new IllegalArgumentException("Partition duration must be at least a millisecond");
+    }
+
+    public void addOrder(Order order) {
+        Objects.requireNonNull(order);
+        partitions.computeIfAbsent(partitionOf(order.getCreationTime()), key -> new Partition()).add(order);
+    }
+
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    public List<Order> getOrders() {
+        List<Order> orders = new ArrayList<>();
+        for(Partition partition: partitions.values()) orders.addAll(partition.getOrders());
+        return Collections.unmodifiableList(orders);
+    }
+
+    public List<Order> searchOrders(SearchStrategy strategy) {
+        SearchStrategy wrapped = strategy;
+        while(wrapped instanceof WrappingSearchStrategy) wrapped = ((WrappingSearchStrategy) wrapped).getWrapped();
+        if(wrapped instanceof CreationTimeSearchStrategy) {
+            // a wrapping strategy, e.g. an instrumented one, still checks the orders of the range
+            CreationTimeSearchStrategy timeRange = (CreationTimeSearchStrategy) wrapped;
+            return search(wrapped == strategy ? null : strategy, timeRange.getFrom(), timeRange.getTo());
+        }
+        List<Order> orders = new ArrayList<>();
+        for(Partition partition: partitions.values()) orders.addAll(partition.searchOrders(strategy));
+        return orders;
+    }
+
+    // orders created from the start time, inclusive, until the end time, exclusive, and matching the strategy
+    public List<Order> searchOrders(SearchStrategy strategy, Instant from, Instant to) {
+        return search(Objects.requireNonNull(strategy), from, to);
+    }
+
+    // a null strategy matches every order in the time range
+    private List<Order> search(SearchStrategy strategy, Instant from, Instant to) {
+        CreationTimeSearchStrategy timeRange = new CreationTimeSearchStrategy(from, to);
+        SearchStrategy bounded = strategy == null ? timeRange : new CompositeSearchStrategy(timeRange, strategy);
+        List<Order> orders = new ArrayList<>();
+        for(Map.Entry<Long, Partition> entry: partitions.subMap(partitionOf(from), true, partitionOf(to), true).entrySet()) {
+            Partition partition = entry.getValue();
+            boolean inside = !start(entry.getKey()).isBefore(from) && !start(entry.getKey() + 1).isAfter(to);
+            if(!inside) {
+                orders.addAll(partition.searchOrders(bounded));
+            } else if(strategy == null) {
+                orders.addAll(partition.getOrders());
+            } else {
+                orders.addAll(partition.searchOrders(strategy));
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Compacts every partition which ends before the given time and is not compacted yet, and
+     * returns the number of partitions compacted.
+     */
+    public int compact(Instant before) {
+        int compacted = 0;
+        for(Partition partition: partitions.headMap(partitionOf(before)).values()) {
+            if(partition.compact()) compacted++;
+        }
+        return compacted;
+    }
+
+    public boolean isCompacted(Instant time) {
+        Partition partition = partitions.get(partitionOf(time));
+        return partition != null && partition.compacted != null;
+    }
+
+    private long partitionOf(Instant time) {
+        long seconds = time.getEpochSecond();
+        long millis;
+        if(seconds > Long.MAX_VALUE / 1000 - 1) {
+            millis = Long.MAX_VALUE;
+        } else if(seconds < Long.MIN_VALUE / 1000 + 1) {
+            millis = Long.MIN_VALUE;
+        } else {
+            millis = seconds * 1000 + time.getNano() / 1_000_000;
+        }
+        return Math.floorDiv(millis, partitionMillis);
+    }
+
+    private Instant start(long partition) {
+        long millis;
+        try {
+            millis = Math.multiplyExact(partition, partitionMillis);
+        } catch (ArithmeticException e) {
+            millis = partition < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return Instant.ofEpochMilli(millis);
+    }
+
+    // readers do not lock, they see either the live or the compacted orders, which are the same
+    private static class Partition {
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        volatile OrderHistory live = new OrderHistory();
+        volatile ColumnarOrderHistory compacted;
+
+        // adds share the read lock, compact takes the write lock so no order is added meanwhile
+        void add(Order order) {
+            lock.readLock().lock();
+            try {
+                ColumnarOrderHistory compacted = this.compacted;
+                if(compacted != null) {
+                    compacted.addOrder(order);
+                } else {
+                    live.addOrder(order);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        boolean compact() {
+            lock.writeLock().lock();
+            try {
+                if(compacted != null) return false;
+                ColumnarOrderHistory columns = new ColumnarOrderHistory();
+                for(Order order: live.getOrders()) columns.addOrder(order);
+                compacted = columns;
+                live = null;
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        // live is read first: compact publishes the columns before it drops the live orders
+        List<Order> getOrders() {
+            OrderHistory live = this.live;
+            ColumnarOrderHistory compacted = this.compacted;
+            return compacted != null ? compacted.getOrders() : live.getOrders();
+        }
+
+        List<Order> searchOrders(SearchStrategy strategy) {
+            OrderHistory live = this.live;
+            ColumnarOrderHistory compacted = this.compacted;
+            return compacted != null ? compacted.searchOrders(strategy) : live.searchOrders(strategy);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package pl.edu.agh.internetshop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commits payments of orders asynchronously, so that waiting for a slow {@link PaymentMethod} does
+ * not hold up the caller. Commits run on virtual threads when the JVM has them, otherwise on a
+ * bounded pool of {@link #DEFAULT_POOL_SIZE} platform threads. Every payment goes through
+ * {@link Order#pay(MoneyTransfer)}, so the transfer's committed flag and the order's paid flag are
+ * set exactly as for a synchronous payment before the returned future completes.
+ * <p>
+ * Before a commit, the transfer is checked by a {@link PaymentValidator} in a separate stage. A
+ * transfer it rejects is never committed, and its future completes with {@code false}. So does
+ * the future of a transfer which is already committed or still being paid, the same transfer
+ * instance is never committed twice.
+ */
+public class PaymentEngine implements AutoCloseable {
+    public static final int DEFAULT_POOL_SIZE = 64;
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final PaymentValidator validator;
+    // transfers being validated or committed
+    private final Set<MoneyTransfer> inFlight = ConcurrentHashMap.newKeySet();
+
+    public PaymentEngine() {
+        this(defaultExecutor(), true, new PaymentValidator());
+    }
+
+    // the executor is not shut down by close()
+    public PaymentEngine(ExecutorService executor) {
+        this(executor, new PaymentValidator());
+    }
+
+    public PaymentEngine(ExecutorService executor, PaymentValidator validator) {
+        this(Objects.requireNonNull(executor), false, Objects.requireNonNull(validator));
+    }
+
+    private PaymentEngine(ExecutorService executor, boolean ownsExecutor, PaymentValidator validator) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.validator = validator;
+    }
+
+    // looked up reflectively, the code is compiled for Java 8
+    static ExecutorService defaultExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(DEFAULT_POOL_SIZE);
+        }
+    }
+
+    public CompletableFuture<Boolean> pay(Order order, MoneyTransfer transfer) {
+        Objects.requireNonNull(order.getPaymentMethod(), "Order has no payment method");
+        Objects.requireNonNull(transfer);
+        // claimed before the committed flag is read, so a commit finishing meanwhile is seen
+        if(!inFlight.add(transfer)) return CompletableFuture.completedFuture(false);
+        if(transfer.isCommitted()) {
+            inFlight.remove(transfer);
+            return CompletableFuture.completedFuture(false);
+        }
+        CompletableFuture<Boolean> result;
+        try {
+            result = CompletableFuture.supplyAsync(() -> validator.validate(order, transfer), executor)
+                    .thenApplyAsync(valid -> valid && commit(order, transfer), executor);
+        } catch (RuntimeException e) {
+            inFlight.remove(transfer);
+            throw e;
+        }
+        result.whenComplete((paid, failure) -> inFlight.remove(transfer));
+        return result;
+    }
+
+    private boolean commit(Order order, MoneyTransfer transfer) {
+        try {
+            order.pay(transfer);
+        } catch (RuntimeException e) {
+            validator.release(transfer);
+            throw e;
+        }
+        if(!order.isPaid()) validator.release(transfer);
+        return order.isPaid();
+    }
+
+    /**
+     * Commits the transfer at every index for the order at the same index, all of them at once.
+     * The futures complete independently, a failed commit leaves its order unpaid and does not
+     * affect the others.
+     */
+    public List<CompletableFuture<Boolean>> settle(List<Order> orders, List<MoneyTransfer> transfers) {
+        if(orders.size() != transfers.size()) throw new IllegalArgumentException("Every order needs exactly one transfer");
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(orders.size());
+        for(int i = 0; i < orders.size(); i++) results.add(pay(orders.get(i), transfers.get(i)));
+        return results;
+    }
+
+    // completes when every payment has completed, with the number of paid orders
+    public CompletableFuture<Integer> settleAll(List<Order> orders, List<MoneyTransfer> transfers) {
+        List<CompletableFuture<Boolean>> results = settle(orders, transfers);
+        return CompletableFuture.allOf(results.stream()
+                .map(result -> result.handle((paid, failure) -> null))
+                .toArray(CompletableFuture[]::new))
+                .thenApply(done -> (int) results.stream().filter(result -> !result.isCompletedExceptionally() && result.join()).count());
+    }
+
+    // waits for the started payments; when interrupted, returns without waiting and keeps the interrupt status
+    @Override
+    public void close() {
+        if(!ownsExecutor) return;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
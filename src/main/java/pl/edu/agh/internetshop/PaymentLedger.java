@@ -0,0 +1,150 @@
+package pl.edu.agh.internetshop;
+
+import java.math.BigInteger;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Makes payments idempotent, so retrying a payment cannot charge the customer twice. Payments are
+ * recorded by the order's id and the transfer's account number, owner details, description and
+ * amount. A payment with the same details as one in progress gets that payment's future, and one
+ * with the same details as a committed payment gets its result without calling the payment method.
+ * A payment which failed or was not committed is forgotten, so it can be retried.
+ * <p>
+ * The transfer and the order of a deduplicated payment are updated with the result as well, even
+ * when they are different instances than the ones which were committed.
+ * <p>
+ * Committed payments are retained for a fixed time after they were committed, one day by
+ * default, and then forgotten by the next call, so the ledger does not grow with every payment
+ * ever made. A payment retried after that is passed to the engine again, whose validator still
+ * rejects a transfer with the description of an accepted one.
+ */
+public class PaymentLedger {
+    public static final long DEFAULT_RETENTION_HOURS = 24;
+
+    private final PaymentEngine engine;
+    private final long retentionNanos;
+    private final LongSupplier clock;
+    private final ConcurrentMap<PaymentKey, CompletableFuture<Boolean>> payments = new ConcurrentHashMap<>();
+    // committed payments in about the order they were committed, the oldest are evicted first
+    private final Queue<Committed> committed = new ConcurrentLinkedQueue<>();
+
+    public PaymentLedger(PaymentEngine engine) {
+        this(engine, DEFAULT_RETENTION_HOURS, TimeUnit.HOURS);
+    }
+
+    public PaymentLedger(PaymentEngine engine, long retention, TimeUnit unit) {
+        this(engine, unit.toNanos(retention), System::nanoTime);
+    }
+
+    PaymentLedger(PaymentEngine engine, long retentionNanos, LongSupplier clock) {
+        if(retentionNanos <= 0) throw new IllegalArgumentException("Retention must be positive");
+        this.engine = Objects.requireNonNull(engine);
+        this.retentionNanos = retentionNanos;
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    public CompletableFuture<Boolean> pay(Order order, MoneyTransfer transfer) {
+        evictExpired();
+        PaymentKey key = new PaymentKey(order.getId(), transfer);
+        CompletableFuture<Boolean> payment = payments.get(key);
+        if(payment == null) {
+            CompletableFuture<Boolean> placeholder = new CompletableFuture<>();
+            payment = payments.putIfAbsent(key, placeholder);
+            if(payment == null) return commit(key, order, transfer, placeholder);
+        }
+        return payment.thenApply(paid -> {
+            transfer.setCommitted(paid);
+            order.setPaid(paid);
+            return paid;
+        });
+    }
+
+    private CompletableFuture<Boolean> commit(PaymentKey key, Order order, MoneyTransfer transfer, CompletableFuture<Boolean> placeholder) {
+        CompletableFuture<Boolean> result;
+        try {
+            result = engine.pay(order, transfer);
+        } catch (RuntimeException e) {
+            payments.remove(key, placeholder);
+            throw e;
+        }
+        result.whenComplete((paid, failure) -> {
+            if(failure != null || !paid) payments.remove(key, placeholder);
+            else committed.add(new Committed(key, placeholder, clock.getAsLong()));
+            if(failure != null) placeholder.completeExceptionally(failure);
+            else placeholder.complete(paid);
+        });
+        return placeholder;
+    }
+
+    private void evictExpired() {
+        long now = clock.getAsLong();
+        Committed oldest;
+        while((oldest = committed.peek()) != null && now - oldest.committedAt >= retentionNanos) {
+            if(committed.remove(oldest)) payments.remove(oldest.key, oldest.payment);
+        }
+    }
+
+    // the number of payments in progress or retained
+    int size() {
+        return payments.size();
+    }
+
+    public boolean isPaid(Order order, MoneyTransfer transfer) {
+        evictExpired();
+        CompletableFuture<Boolean> payment = payments.get(new PaymentKey(order.getId(), transfer));
+        return payment != null && payment.isDone() && !payment.isCompletedExceptionally() && payment.join();
+    }
+
+    private static final class Committed {
+        final PaymentKey key;
+        final CompletableFuture<Boolean> payment;
+        final long committedAt;
+
+        Committed(PaymentKey key, CompletableFuture<Boolean> payment, long committedAt) {
+            this.key = key;
+            this.payment = payment;
+            this.committedAt = committedAt;
+        }
+    }
+
+    private static final class PaymentKey {
+        private final UUID orderId;
+        private final BigInteger accountNumber;
+        private final String ownerDetails;
+        private final String description;
+        private final int amount;
+        private final int hash;
+
+        PaymentKey(UUID orderId, MoneyTransfer transfer) {
+            this.orderId = orderId;
+            this.accountNumber = transfer.getAccountNumber();
+            this.ownerDetails = transfer.getOwnerDetails();
+            this.description = transfer.getDescription();
+            this.amount = transfer.getAmount();
+            this.hash = Objects.hash(orderId, accountNumber, ownerDetails, description, amount);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof PaymentKey)) return false;
+            PaymentKey other = (PaymentKey) o;
+            return hash == other.hash && amount == other.amount && orderId.equals(other.orderId)
+                    && Objects.equals(accountNumber, other.accountNumber) && Objects.equals(ownerDetails, other.ownerDetails)
+                    && Objects.equals(description, other.description);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
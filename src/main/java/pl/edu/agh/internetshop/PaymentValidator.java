@@ -0,0 +1,75 @@
+package pl.edu.agh.internetshop;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+/**
+ * Cheap checks run before a transfer is committed, so transfers which can never succeed do not
+ * reach the payment method. A transfer is rejected when its amount, in minor units, differs from
+ * the order's {@link Order#getTotalPrice() total price}, when another transfer with the same
+ * description was already accepted, or when the order's payment method is a
+ * {@link MoneyTransferPaymentTransaction} whose {@code validate} rejects it.
+ * <p>
+ * Results are cached per transfer instance (transfers have identity equality), so validating a
+ * transfer again is a map lookup. The cache holds transfers weakly. Descriptions of at most
+ * {@link #MAX_DESCRIPTIONS} accepted transfers are remembered, the oldest ones are forgotten first.
+ */
+public class PaymentValidator {
+    public static final int MAX_DESCRIPTIONS = 1 << 16;
+
+    private final Map<MoneyTransfer, Boolean> results = Collections.synchronizedMap(new WeakHashMap<>());
+    // guarded by itself
+    private final Map<String, MoneyTransfer> descriptions;
+
+    public PaymentValidator() {
+        this(MAX_DESCRIPTIONS);
+    }
+
+    public PaymentValidator(int maxDescriptions) {
+        if(maxDescriptions <= 0) throw new IllegalArgumentException("Maximum number of descriptions must be positive");
+        this.descriptions = new LinkedHashMap<String, MoneyTransfer>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MoneyTransfer> eldest) {
+                return size() > maxDescriptions;
+            }
+        };
+    }
+
+    public boolean validate(Order order, MoneyTransfer transfer) {
+        Objects.requireNonNull(transfer);
+        Boolean cached = results.get(transfer);
+        if(cached != null) return cached;
+        boolean valid = check(order, transfer);
+        results.put(transfer, valid);
+        return valid;
+    }
+
+    private boolean check(Order order, MoneyTransfer transfer) {
+        // the total price is rounded to minor units, unlike the Money variant it does not throw
+        // for product prices with more fraction digits
+        if(transfer.getAmount() != Money.of(order.getTotalPrice()).getMinorUnits()) return false;
+        PaymentMethod paymentMethod = order.getPaymentMethod();
+        if(paymentMethod instanceof MoneyTransferPaymentTransaction
+                && !((MoneyTransferPaymentTransaction) paymentMethod).validate(transfer)) return false;
+        String description = transfer.getDescription();
+        if(description == null) return true;
+        synchronized(descriptions) {
+            MoneyTransfer accepted = descriptions.putIfAbsent(description, transfer);
+            return accepted == null || accepted == transfer;
+        }
+    }
+
+    // lets another transfer use the description of one which was not committed
+    public void release(MoneyTransfer transfer) {
+        results.remove(transfer);
+        if(transfer.getDescription() == null) return;
+        synchronized(descriptions) {
+            descriptions.remove(transfer.getDescription(), transfer);
+        }
+    }
+}
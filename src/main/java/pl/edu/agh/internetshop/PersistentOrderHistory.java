@@ -0,0 +1,218 @@
+package pl.edu.agh.internetshop;
+
+import pl.edu.agh.internetshop.search.PrunableSearchStrategy;
+import pl.edu.agh.internetshop.search.SearchStrategy;
+import pl.edu.agh.internetshop.search.SegmentSummary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Order history kept in an append-only log of memory-mapped segment files, so it survives restarts
+ * and is not limited by the heap. Every record is {@code [length][crc32][order]}; the length is
+ * written last, and on startup the segments are mapped and records are walked by their lengths
+ * until the first empty or damaged one, which is where appending continues.
+ * <p>
+ * Orders are stored with {@link OrderEncoder}: their id, products, discounts, shipment addresses
+ * and paid and sent flags. Payment and shipment methods are services rather than data, so orders read back from the
+ * log have none set. Searches decode orders straight from the mapped segments one at a time.
+ * <p>
+ * Every segment is summarized in memory by Bloom filters over product and recipient names, built
+ * when it is opened and kept up to date by appends. Searches with a {@link PrunableSearchStrategy}
+ * skip the segments it rules out without decoding them.
+ */
+public class PersistentOrderHistory implements Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "orders-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_HEADER_SIZE = 8;
+    // used to size segment summaries, records of typical orders are a few hundred bytes
+    private static final int EXPECTED_RECORD_SIZE = 256;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<Segment> segments = new ArrayList<>();
+    // segments and their limits are published through this field for lock-free readers
+    private volatile Segment[] published;
+
+    public PersistentOrderHistory(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public PersistentOrderHistory(Path directory, int segmentSize) throws IOException {
+        if(segmentSize <= RECORD_HEADER_SIZE) throw new IllegalArgumentException("Segment size is too small");
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        List<Path> paths = new ArrayList<>();
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for(Path path: stream) paths.add(path);
+        }
+        Collections.sort(paths);
+        for(Path path: paths) segments.add(Segment.open(path, segmentSize));
+        if(segments.isEmpty()) segments.add(Segment.open(segmentPath(0), segmentSize));
+        publish();
+    }
+
+    public synchronized void addOrder(Order order) {
+        byte[] record = encode(Objects.requireNonNull(order));
+        if(RECORD_HEADER_SIZE + record.length > segmentSize) throw new IllegalArgumentException("Order does not fit into a segment");
+        Segment segment = segments.get(segments.size() - 1);
+        if(!segment.append(record)) {
+            try {
+                segment = Segment.open(segmentPath(segments.size()), segmentSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            segments.add(segment);
+            segment.append(record);
+        }
+        segment.summary.add(order);
+        publish();
+    }
+
+    public List<Order> getOrders() {
+        return Collections.unmodifiableList(searchOrders(order -> true));
+    }
+
+    public List<Order> searchOrders(SearchStrategy strategy) {
+        List<Order> result = new ArrayList<>();
+        PrunableSearchStrategy pruning = strategy instanceof PrunableSearchStrategy ? (PrunableSearchStrategy) strategy : null;
+        for(Segment segment: published) {
+            if(pruning != null && !pruning.mayMatch(segment.summary)) continue;
+            segment.forEach(order -> {
+                if(strategy.filter(order)) result.add(order);
+            });
+        }
+        return result;
+    }
+
+    public synchronized void flush() {
+        for(Segment segment: segments) segment.buffer.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        for(Segment segment: segments) segment.channel.close();
+    }
+
+    private void publish() {
+        Segment[] snapshot = new Segment[segments.size()];
+        for(int i = 0; i < snapshot.length; i++) snapshot[i] = segments.get(i).snapshot();
+        published = snapshot;
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private static class Segment {
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        // shared with the snapshots, which may see names of later records
+        final SegmentSummary summary;
+        int limit;
+
+        private Segment(FileChannel channel, MappedByteBuffer buffer, SegmentSummary summary, int limit) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.summary = summary;
+            this.limit = limit;
+        }
+
+        static Segment open(Path path, int segmentSize) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, channel.size()));
+            SegmentSummary summary = new SegmentSummary(Math.max(1, buffer.capacity() / EXPECTED_RECORD_SIZE));
+            Segment segment = new Segment(channel, buffer, summary, recover(buffer));
+            segment.forEach(summary::add);
+            return segment;
+        }
+
+        // decodes the records up to the limit one at a time
+        void forEach(Consumer<Order> action) {
+            ByteBuffer records = buffer.duplicate();
+            int position = 0;
+            while(position < limit) {
+                int length = records.getInt(position);
+                records.limit(position + RECORD_HEADER_SIZE + length).position(position + RECORD_HEADER_SIZE);
+                action.accept(decode(records));
+                records.limit(records.capacity());
+                position += RECORD_HEADER_SIZE + length;
+            }
+        }
+
+        // walks the records and returns the end of the last complete one
+        private static int recover(ByteBuffer buffer) {
+            int position = 0;
+            CRC32 crc = new CRC32();
+            ByteBuffer records = buffer.duplicate();
+            byte[] payload = new byte[256];
+            while(position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if(length <= 0 || length > buffer.capacity() - position - RECORD_HEADER_SIZE) break;
+                if(payload.length < length) payload = new byte[Math.max(length, payload.length * 2)];
+                records.position(position + RECORD_HEADER_SIZE);
+                records.get(payload, 0, length);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if((int) crc.getValue() != buffer.getInt(position + 4)) break;
+                position += RECORD_HEADER_SIZE + length;
+            }
+            return position;
+        }
+
+        Segment snapshot() {
+            return new Segment(channel, buffer, summary, limit);
+        }
+
+        boolean append(byte[] record) {
+            int end = limit + RECORD_HEADER_SIZE + record.length;
+            if(end > buffer.capacity()) return false;
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            ByteBuffer target = buffer.duplicate();
+            target.position(limit + RECORD_HEADER_SIZE);
+            target.put(record);
+            buffer.putInt(limit + 4, (int) crc.getValue());
+            // a shorter record may overwrite the tail of a damaged one, so end the log explicitly
+            if(end + 4 <= buffer.capacity()) buffer.putInt(end, 0);
+            buffer.putInt(limit, record.length);
+            limit = end;
+            return true;
+        }
+    }
+
+    // records are decoded one at a time, so every record gets its own string table
+    static byte[] encode(Order order) {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        while(true) {
+            try {
+                new OrderEncoder().encode(order, buffer);
+                return Arrays.copyOf(buffer.array(), buffer.position());
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    static Order decode(ByteBuffer in) {
+        return new OrderDecoder().decodeOrder(in);
+    }
+}
@@ -10,11 +10,15 @@ public class Product {
 	
     private final String name;
     private final BigDecimal price;
+    private final int hash;
+    // the rate the last tax table found for the product, see TaxTable
+    private volatile TaxTable.ProductRate taxRate;
 
     public Product(String name, BigDecimal price) {
         this.name = name;
         this.price = price;
         this.price.setScale(PRICE_PRECISION, ROUND_STRATEGY);
+        this.hash = Objects.hash(name, price);
     }
 
     public String getName() {
@@ -25,17 +29,26 @@ public class Product {
         return price;
     }
 
+    TaxTable.ProductRate getTaxRate() {
+        return taxRate;
+    }
+
+    void setTaxRate(TaxTable.ProductRate taxRate) {
+        this.taxRate = taxRate;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Product product = (Product) o;
-        return name.equals(product.name) &&
+        return hash == product.hash &&
+                name.equals(product.name) &&
                 price.equals(product.price);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, price);
+        return hash;
     }
 }
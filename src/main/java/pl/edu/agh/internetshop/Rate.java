@@ -0,0 +1,84 @@
+package pl.edu.agh.internetshop;
+
+import java.math.BigDecimal;
+
+public final class Rate {
+    static final int MAX_SCALE = 18;
+    private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for(int i = 1; i <= MAX_SCALE; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private final BigDecimal value;
+    // value == unscaled / divisor, exact; exact is false when it does not fit into longs
+    private final long unscaled;
+    private final long divisor;
+    private final boolean exact;
+    private int hash;
+
+    private Rate(BigDecimal value) {
+        this.value = value;
+        BigDecimal normalized = value.scale() < 0 ? value.setScale(0) : value;
+        if(normalized.scale() <= MAX_SCALE && normalized.unscaledValue().bitLength() < Long.SIZE) {
+            this.unscaled = normalized.unscaledValue().longValue();
+            this.divisor = POWERS_OF_TEN[normalized.scale()];
+            this.exact = true;
+        } else {
+            this.unscaled = 0;
+            this.divisor = 1;
+            this.exact = false;
+        }
+    }
+
+    public static Rate of(BigDecimal value) {
+        return new Rate(value);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return value;
+    }
+
+    long applyTo(long minorUnits) {
+        if(exact) {
+            long product = minorUnits * unscaled;
+            if(multipliesExactly(minorUnits, unscaled, product)) return divideHalfUp(product, divisor);
+        }
+        return BigDecimal.valueOf(minorUnits).multiply(value)
+                .setScale(0, Product.ROUND_STRATEGY).longValueExact();
+    }
+
+    // same overflow check as Math.multiplyExact, without throwing
+    private static boolean multipliesExactly(long x, long y, long product) {
+        if(((Math.abs(x) | Math.abs(y)) >>> 31) == 0) return true;
+        return (y == 0 || product / y == x) && !(x == Long.MIN_VALUE && y == -1);
+    }
+
+    private static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if(Math.abs(remainder) >= divisor - Math.abs(remainder)) quotient += dividend < 0 ? -1 : 1;
+        return quotient;
+    }
+
+    // rates of equal value are equal regardless of scale, e.g. 1.23 and 1.230
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return value.compareTo(((Rate) o).value) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if(h == 0) hash = h = value.stripTrailingZeros().hashCode();
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return value.toPlainString();
+    }
+}
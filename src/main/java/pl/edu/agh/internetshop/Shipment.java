@@ -2,7 +2,8 @@ package pl.edu.agh.internetshop;
 
 public class Shipment {
 
-    private boolean shipped;
+    // set by dispatching and tracking threads
+    private volatile boolean shipped;
     private Address senderAddress;
     private Address recipientAddress;
 
@@ -16,6 +17,11 @@ public class Shipment {
 
     public Address getRecipientAddress() { return recipientAddress; }
 
+    void internAddresses() {
+        senderAddress = InterningRegistry.intern(senderAddress);
+        recipientAddress = InterningRegistry.intern(recipientAddress);
+    }
+
     public boolean isShipped() {
         return shipped;
     }
@@ -0,0 +1,230 @@
+package pl.edu.agh.internetshop;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Sends shipments of orders asynchronously instead of blocking in {@link Order#send()}. Orders wait
+ * in a bounded queue; a batching thread takes whatever has queued up, groups it by carrier (the
+ * order's {@link ShipmentMethod}) and route (by default the recipient's city), and hands the
+ * shipments of every group to the executor one after another, each as its own request, so a
+ * batch is sent concurrently. At most {@code maxInFlight} requests run at a time; when they are all
+ * busy the queue fills up and {@link #dispatch(Order)} blocks, so producers are slowed down to the
+ * carriers' pace. Every shipment's result is set with {@link Shipment#setShipped(boolean)} and then
+ * completes the future returned for its order. Futures of orders which cannot be routed or handed
+ * to the executor, or which are still queued when the batching thread is interrupted, complete
+ * exceptionally.
+ */
+public class ShipmentDispatcher implements AutoCloseable {
+    private final Executor executor;
+    private final int maxBatchSize;
+    private final Semaphore inFlight;
+    private final int queueCapacity;
+    private final Function<Order, Object> routeOf;
+    private final Thread batcher;
+    // the queue and closed are guarded by the lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private boolean closed;
+
+    public ShipmentDispatcher(Executor executor, int maxBatchSize, int maxInFlight, int queueCapacity) {
+        this(executor, maxBatchSize, maxInFlight, queueCapacity, ShipmentDispatcher::recipientCity);
+    }
+
+    public ShipmentDispatcher(Executor executor, int maxBatchSize, int maxInFlight, int queueCapacity, Function<Order, Object> routeOf) {
+        if(maxBatchSize < 1 || maxInFlight < 1 || queueCapacity < 1) throw new IllegalArgumentException("Limits must be positive");
+        this.executor = Objects.requireNonNull(executor);
+        this.maxBatchSize = maxBatchSize;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.queueCapacity = queueCapacity;
+        this.routeOf = Objects.requireNonNull(routeOf);
+        this.batcher = new Thread(this::run, "shipment-dispatcher");
+        this.batcher.setDaemon(true);
+        this.batcher.start();
+    }
+
+    private static Object recipientCity(Order order) {
+        Address recipient = order.getShipment().getRecipientAddress();
+        return recipient == null ? null : recipient.getCity();
+    }
+
+    // blocks while the queue is full, throws RejectedExecutionException once the dispatcher is closed
+    public CompletableFuture<Boolean> dispatch(Order order) throws InterruptedException {
+        Objects.requireNonNull(order.getShipment(), "Order has no shipment");
+        Objects.requireNonNull(order.getShipmentMethod(), "Order has no shipment method");
+        Pending pending = new Pending(order);
+        lock.lockInterruptibly();
+        try {
+            while(!closed && queue.size() == queueCapacity) notFull.await();
+            if(closed) throw new RejectedExecutionException("Dispatcher is closed");
+            queue.add(pending);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        return pending.result;
+    }
+
+    int getQueueSize() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting orders, rejects the dispatches waiting for room in the queue, and waits until
+     * the queued orders are handed to the executor. When interrupted, returns without waiting and
+     * keeps the interrupt status.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            batcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // every order taken from the queue is either handed to the executor or its future is completed
+    private void run() {
+        List<Pending> drained = new ArrayList<>();
+        // shipments in the order of their batches, removed once handed over
+        ArrayDeque<Pending> batches = new ArrayDeque<>();
+        try {
+            while(take(drained)) {
+                group(drained, batches);
+                drained.clear();
+                while(!batches.isEmpty()) {
+                    submit(batches.peek());
+                    batches.poll();
+                }
+            }
+        } catch (InterruptedException e) {
+            // the batcher was stopped, the orders it has not handed over are rejected below
+        } finally {
+            RejectedExecutionException stopped = new RejectedExecutionException("Dispatcher was stopped");
+            for(Pending pending: drained) pending.result.completeExceptionally(stopped);
+            for(Pending pending: batches) pending.result.completeExceptionally(stopped);
+            lock.lock();
+            try {
+                closed = true;
+                for(Pending pending: queue) pending.result.completeExceptionally(stopped);
+                queue.clear();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // waits for queued orders and moves them all to drained, returns false once closed and empty
+    private boolean take(List<Pending> drained) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while(queue.isEmpty() && !closed) notEmpty.await();
+            if(queue.isEmpty()) return false;
+            drained.addAll(queue);
+            queue.clear();
+            notFull.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // an order whose route cannot be computed fails alone
+    private void group(List<Pending> drained, Collection<Pending> grouped) {
+        Map<List<Object>, List<Pending>> batches = new LinkedHashMap<>();
+        for(Pending pending: drained) {
+            Order order = pending.order;
+            List<Object> key;
+            try {
+                key = Arrays.asList(new Carrier(order.getShipmentMethod()), routeOf.apply(order));
+            } catch (RuntimeException e) {
+                pending.result.completeExceptionally(e);
+                continue;
+            }
+            List<Pending> batch = batches.computeIfAbsent(key, k -> new ArrayList<>());
+            batch.add(pending);
+            if(batch.size() == maxBatchSize) grouped.addAll(batches.remove(key));
+        }
+        for(List<Pending> batch: batches.values()) grouped.addAll(batch);
+    }
+
+    private void submit(Pending pending) throws InterruptedException {
+        inFlight.acquire();
+        try {
+            executor.execute(() -> send(pending));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            pending.result.completeExceptionally(e);
+        }
+    }
+
+    private void send(Pending pending) {
+        try {
+            Shipment shipment = pending.order.getShipment();
+            boolean sent = pending.order.getShipmentMethod().send(shipment, shipment.getSenderAddress(), shipment.getRecipientAddress());
+            shipment.setShipped(sent);
+            pending.result.complete(sent);
+        } catch (RuntimeException e) {
+            pending.result.completeExceptionally(e);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private static class Pending {
+        final Order order;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        Pending(Order order) {
+            this.order = order;
+        }
+    }
+
+    // carriers are services, so they are grouped by identity rather than equals
+    private static class Carrier {
+        final ShipmentMethod method;
+
+        Carrier(ShipmentMethod method) {
+            this.method = method;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Carrier && ((Carrier) o).method == method;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(method);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package pl.edu.agh.internetshop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks outstanding shipments by polling {@link SurfaceMailBus#isSent(Object)} until they are
+ * sent, then marks them with {@link Shipment#setShipped(boolean)}. Shipments wait in a queue ordered
+ * by their next poll time, and every {@link #tick()} polls all shipments which are due, so a single
+ * scheduled thread can track thousands of them.
+ * <p>
+ * Each shipment has its own poll interval. It starts at the initial interval and doubles after every
+ * poll which finds the shipment still unsent, up to the maximum interval. The next poll time is
+ * jittered by up to a quarter of the interval, so shipments tracked together do not stay in step.
+ * <p>
+ * Closing the tracker stops the ticks and completes the futures of shipments still tracked
+ * exceptionally with a {@link RejectedExecutionException}, like shipments tracked afterwards.
+ */
+public class ShipmentTracker implements AutoCloseable {
+    private final SurfaceMailBus mailBus;
+    private final long initialIntervalNanos;
+    private final long maxIntervalNanos;
+    private final LongSupplier clock;
+    private final Random random;
+    private final PriorityQueue<Tracked> queue = new PriorityQueue<>((a, b) -> Long.compare(a.nextPoll - b.nextPoll, 0));
+    // guarded by this, like the queue
+    private ScheduledFuture<?> ticks;
+    private boolean closed;
+
+    public ShipmentTracker(SurfaceMailBus mailBus, long initialInterval, long maxInterval, TimeUnit unit) {
+        this(mailBus, unit.toNanos(initialInterval), unit.toNanos(maxInterval), System::nanoTime, new Random());
+    }
+
+    ShipmentTracker(SurfaceMailBus mailBus, long initialIntervalNanos, long maxIntervalNanos, LongSupplier clock, Random random) {
+        if(initialIntervalNanos <= 0 || maxIntervalNanos < initialIntervalNanos) throw new IllegalArgumentException("Incorrect poll intervals");
+        this.mailBus = Objects.requireNonNull(mailBus);
+        this.initialIntervalNanos = initialIntervalNanos;
+        this.maxIntervalNanos = maxIntervalNanos;
+        this.clock = clock;
+        this.random = random;
+    }
+
+    // completes with the shipment once it is sent
+    public CompletableFuture<Shipment> track(Shipment shipment) {
+        Tracked tracked = new Tracked(Objects.requireNonNull(shipment));
+        if(shipment.isShipped()) {
+            tracked.result.complete(shipment);
+        } else {
+            synchronized(this) {
+                if(!closed) {
+                    tracked.interval = initialIntervalNanos;
+                    tracked.nextPoll = clock.getAsLong() + jitter(initialIntervalNanos);
+                    queue.add(tracked);
+                    return tracked.result;
+                }
+            }
+            tracked.result.completeExceptionally(new RejectedExecutionException("Tracker is closed"));
+        }
+        return tracked.result;
+    }
+
+    public synchronized int getPendingCount() {
+        return queue.size();
+    }
+
+    // polls every shipment which is due, returns the number of shipments found sent
+    public int tick() {
+        List<Tracked> due = new ArrayList<>();
+        long now = clock.getAsLong();
+        synchronized(this) {
+            while(!queue.isEmpty() && queue.peek().nextPoll - now <= 0) due.add(queue.poll());
+        }
+        int sent = 0;
+        List<Tracked> unsent = new ArrayList<>(due.size());
+        for(Tracked tracked: due) {
+            if(poll(tracked.shipment)) {
+                tracked.shipment.setShipped(true);
+                tracked.result.complete(tracked.shipment);
+                sent++;
+            } else {
+                unsent.add(tracked);
+            }
+        }
+        if(!unsent.isEmpty()) {
+            synchronized(this) {
+                if(!closed) {
+                    for(Tracked tracked: unsent) {
+                        tracked.interval = Math.min(tracked.interval * 2, maxIntervalNanos);
+                        tracked.nextPoll = now + jitter(tracked.interval);
+                        queue.add(tracked);
+                    }
+                    return sent;
+                }
+            }
+            reject(unsent);
+        }
+        return sent;
+    }
+
+    // a failed poll counts as not sent yet, so the shipment is polled again later
+    private boolean poll(Shipment shipment) {
+        try {
+            return mailBus.isSent(shipment);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private long jitter(long interval) {
+        return interval - (long) (random.nextDouble() * (interval / 4));
+    }
+
+    public synchronized void start(ScheduledExecutorService scheduler, long tickInterval, TimeUnit unit) {
+        if(ticks != null) throw new IllegalStateException("Tracker is already started");
+        ticks = scheduler.scheduleWithFixedDelay(this::tick, tickInterval, tickInterval, unit);
+    }
+
+    @Override
+    public void close() {
+        List<Tracked> pending;
+        synchronized(this) {
+            closed = true;
+            if(ticks != null) ticks.cancel(false);
+            pending = new ArrayList<>(queue);
+            queue.clear();
+        }
+        reject(pending);
+    }
+
+    // completed without the lock, so dependent actions do not run holding it
+    private static void reject(List<Tracked> tracked) {
+        RejectedExecutionException closed = new RejectedExecutionException("Tracker was closed");
+        for(Tracked pending: tracked) pending.result.completeExceptionally(closed);
+    }
+
+    private static class Tracked {
+        final Shipment shipment;
+        final CompletableFuture<Shipment> result = new CompletableFuture<>();
+        long interval;
+        long nextPoll;
+
+        Tracked(Shipment shipment) {
+            this.shipment = shipment;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package pl.edu.agh.internetshop;
+
+import java.util.Arrays;
+
+/**
+ * Net prices in minor units summed per tax rate. Every sum is taxed and rounded on its own, so
+ * orders whose products share one rate are taxed exactly as a single net price.
+ */
+final class TaxBreakdown {
+    // orders rarely mix more than a few rates, a linear scan beats hashing
+    private Rate[] rates = new Rate[2];
+    private long[] netPrices = new long[2];
+    private int size;
+
+    void add(Rate taxRate, long netPrice) {
+        for(int i = 0; i < size; i++) {
+            if(rates[i] == taxRate || rates[i].equals(taxRate)) {
+                netPrices[i] = Math.addExact(netPrices[i], netPrice);
+                return;
+            }
+        }
+        if(size == rates.length) {
+            rates = Arrays.copyOf(rates, size * 2);
+            netPrices = Arrays.copyOf(netPrices, size * 2);
+        }
+        rates[size] = taxRate;
+        netPrices[size++] = netPrice;
+    }
+
+    long taxed() {
+        long gross = 0;
+        for(int i = 0; i < size; i++) gross = Math.addExact(gross, rates[i].applyTo(netPrices[i]));
+        return gross;
+    }
+
+    // applies the general discount to every sum before taxing it
+    long taxed(Rate discount) {
+        long gross = 0;
+        for(int i = 0; i < size; i++) gross = Math.addExact(gross, rates[i].applyTo(discount.applyTo(netPrices[i])));
+        return gross;
+    }
+}
@@ -0,0 +1,22 @@
+package pl.edu.agh.internetshop;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Tax rates of the products of an order, e.g. the rates of the jurisdiction it is sold in. A rate
+ * is the multiplier turning a net price into a gross one, so a 23% tax is the rate 1.23. Orders
+ * ask for the rate of every product whenever they are priced, so implementations should resolve
+ * rates once and return the same {@link Rate} for the same product.
+ */
+public interface TaxPolicy {
+    BigDecimal DEFAULT_TAX_RATE = new BigDecimal("1.23");
+    TaxPolicy DEFAULT = uniform(DEFAULT_TAX_RATE);
+
+    Rate getTaxRate(Product product);
+
+    static TaxPolicy uniform(BigDecimal taxRate) {
+        Rate rate = Rate.of(Objects.requireNonNull(taxRate));
+        return product -> rate;
+    }
+}
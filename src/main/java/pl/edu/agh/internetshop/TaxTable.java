@@ -0,0 +1,58 @@
+package pl.edu.agh.internetshop;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Tax rates of one jurisdiction, by tax class. Products without a class or with a class the table
+ * does not know pay the default rate. A product's rate is cached on the product itself, so lookups
+ * take no lock and products shared through {@link InterningRegistry} are classified once; the cache
+ * holds the rate of one table, products priced by several tables in turn are classified again.
+ * Rates are multipliers, see {@link TaxPolicy}.
+ */
+public class TaxTable implements TaxPolicy {
+    private final Rate defaultRate;
+    private final Map<String, Rate> classRates = new HashMap<>();
+    private final Function<Product, String> taxClassOf;
+
+    public TaxTable(BigDecimal defaultRate, Map<String, BigDecimal> classRates, Function<Product, String> taxClassOf) {
+        this.defaultRate = toRate(defaultRate);
+        for(Map.Entry<String, BigDecimal> entry: classRates.entrySet()) {
+            this.classRates.put(Objects.requireNonNull(entry.getKey()), toRate(entry.getValue()));
+        }
+        this.taxClassOf = Objects.requireNonNull(taxClassOf);
+    }
+
+    private static Rate toRate(BigDecimal taxRate) {
+        if(taxRate.compareTo(BigDecimal.ONE) < 0) throw new IllegalArgumentException("Tax rate cannot be lower than 1");
+        return Rate.of(taxRate);
+    }
+
+    @Override
+    public Rate getTaxRate(Product product) {
+        ProductRate cached = product.getTaxRate();
+        if(cached != null && cached.table == this) return cached.rate;
+        String taxClass = taxClassOf.apply(product);
+        Rate rate = taxClass == null ? defaultRate : classRates.getOrDefault(taxClass, defaultRate);
+        // racing threads find the same rate, either may win
+        product.setTaxRate(new ProductRate(this, rate));
+        return rate;
+    }
+
+    public Rate getDefaultRate() {
+        return defaultRate;
+    }
+
+    static final class ProductRate {
+        final TaxTable table;
+        final Rate rate;
+
+        ProductRate(TaxTable table, Rate rate) {
+            this.table = table;
+            this.rate = rate;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package pl.edu.agh.internetshop.metrics;
+
+// Counts of a LatencyHistogram at one moment.
+public class HistogramSnapshot {
+    private final long[] counts;
+    private final long count;
+    private final long max;
+
+    HistogramSnapshot(long[] counts, long max) {
+        this.counts = counts;
+        long count = 0;
+        for(long bucketCount: counts) count += bucketCount;
+        this.count = count;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    // the value below or at which the given percentage of recorded values are, 0 when empty
+    public long getPercentile(double percentile) {
+        if(percentile < 0 || percentile > 100) throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        if(count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for(int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if(seen >= rank) return Math.min(LatencyHistogram.highestValueOf(bucket), max);
+        }
+        return max;
+    }
+
+    public double getMean() {
+        if(count == 0) return 0;
+        double sum = 0;
+        for(int bucket = 0; bucket < counts.length; bucket++) {
+            if(counts[bucket] != 0) sum += (double) counts[bucket] * LatencyHistogram.highestValueOf(bucket);
+        }
+        return sum / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d p50=%d p99=%d max=%d", count, getPercentile(50), getPercentile(99), max);
+    }
+}
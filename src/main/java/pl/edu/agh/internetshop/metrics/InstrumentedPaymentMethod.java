@@ -0,0 +1,57 @@
+package pl.edu.agh.internetshop.metrics;
+
+import pl.edu.agh.internetshop.MoneyTransfer;
+import pl.edu.agh.internetshop.MoneyTransferPaymentTransaction;
+import pl.edu.agh.internetshop.PaymentMethod;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts commits and committed transfers of a payment method and records the commit latency.
+class InstrumentedPaymentMethod implements PaymentMethod {
+    private final Metrics metrics;
+    private final PaymentMethod paymentMethod;
+    private final LongAdder calls;
+    private final LongAdder committed;
+    private final LatencyHistogram latency;
+
+    InstrumentedPaymentMethod(Metrics metrics, String name, PaymentMethod paymentMethod) {
+        this.metrics = metrics;
+        this.paymentMethod = paymentMethod;
+        this.calls = metrics.counter("payment." + name + ".commit");
+        this.committed = metrics.counter("payment." + name + ".committed");
+        this.latency = metrics.histogram("payment." + name + ".commit");
+    }
+
+    // keeps the MoneyTransferPaymentTransaction interface of the payment method
+    static PaymentMethod of(Metrics metrics, String name, PaymentMethod paymentMethod) {
+        if(paymentMethod instanceof MoneyTransferPaymentTransaction) {
+            return new Transaction(metrics, name, (MoneyTransferPaymentTransaction) paymentMethod);
+        }
+        return new InstrumentedPaymentMethod(metrics, name, paymentMethod);
+    }
+
+    @Override
+    public boolean commit(MoneyTransfer transfer) {
+        if(!metrics.isEnabled()) return paymentMethod.commit(transfer);
+        long start = System.nanoTime();
+        boolean result = paymentMethod.commit(transfer);
+        latency.record(System.nanoTime() - start);
+        calls.increment();
+        if(result) committed.increment();
+        return result;
+    }
+
+    private static class Transaction extends InstrumentedPaymentMethod implements MoneyTransferPaymentTransaction {
+        private final MoneyTransferPaymentTransaction transaction;
+
+        Transaction(Metrics metrics, String name, MoneyTransferPaymentTransaction transaction) {
+            super(metrics, name, transaction);
+            this.transaction = transaction;
+        }
+
+        @Override
+        public boolean validate(MoneyTransfer transfer) {
+            return transaction.validate(transfer);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package pl.edu.agh.internetshop.metrics;
+
+import pl.edu.agh.internetshop.Order;
+import pl.edu.agh.internetshop.search.ColumnarSearchStrategy;
+import pl.edu.agh.internetshop.search.IndexedSearchStrategy;
+import pl.edu.agh.internetshop.search.OrderColumns;
+import pl.edu.agh.internetshop.search.PostingList;
+import pl.edu.agh.internetshop.search.PrunableSearchStrategy;
+import pl.edu.agh.internetshop.search.SearchIndexes;
+import pl.edu.agh.internetshop.search.SearchStrategy;
+import pl.edu.agh.internetshop.search.SegmentSummary;
+import pl.edu.agh.internetshop.search.WrappingSearchStrategy;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+
+// Counts orders checked and matched by a strategy, index lookups and the candidates they returned,
+// and segments it skipped.
+class InstrumentedSearchStrategy implements IndexedSearchStrategy, ColumnarSearchStrategy, PrunableSearchStrategy, WrappingSearchStrategy {
+    private final Metrics metrics;
+    private final SearchStrategy strategy;
+    private final LongAdder evaluated;
+    private final LongAdder matched;
+    private final LongAdder candidates;
+    private final LongAdder pruned;
+    private final LatencyHistogram lookups;
+
+    InstrumentedSearchStrategy(Metrics metrics, String name, SearchStrategy strategy) {
+        this.metrics = metrics;
+        this.strategy = strategy;
+        this.evaluated = metrics.counter(name + ".evaluated");
+        this.matched = metrics.counter(name + ".matched");
+        this.candidates = metrics.counter(name + ".candidates");
+        this.pruned = metrics.counter(name + ".pruned");
+        this.lookups = metrics.histogram(name + ".lookup");
+    }
+
+    @Override
+    public SearchStrategy getWrapped() {
+        return strategy;
+    }
+
+    @Override
+    public boolean filter(Order order) {
+        boolean result = strategy.filter(order);
+        if(metrics.isEnabled()) {
+            evaluated.increment();
+            if(result) matched.increment();
+        }
+        return result;
+    }
+
+    @Override
+    public PostingList lookup(SearchIndexes indexes) {
+        if(!(strategy instanceof IndexedSearchStrategy)) return null;
+        if(!metrics.isEnabled()) return ((IndexedSearchStrategy) strategy).lookup(indexes);
+        long start = System.nanoTime();
+        PostingList positions = ((IndexedSearchStrategy) strategy).lookup(indexes);
+        lookups.record(System.nanoTime() - start);
+        if(positions != null) candidates.add(positions.size());
+        return positions;
+    }
+
+    @Override
+    public boolean mayMatch(SegmentSummary summary) {
+        if(!(strategy instanceof PrunableSearchStrategy)) return true;
+        boolean result = ((PrunableSearchStrategy) strategy).mayMatch(summary);
+        if(!result && metrics.isEnabled()) pruned.increment();
+        return result;
+    }
+
+    @Override
+    public IntPredicate compile(OrderColumns columns) {
+        if(!(strategy instanceof ColumnarSearchStrategy)) return null;
+        IntPredicate predicate = ((ColumnarSearchStrategy) strategy).compile(columns);
+        if(predicate == null || !metrics.isEnabled()) return predicate;
+        return row -> {
+            boolean result = predicate.test(row);
+            evaluated.increment();
+            if(result) matched.increment();
+            return result;
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package pl.edu.agh.internetshop.metrics;
+
+import pl.edu.agh.internetshop.Address;
+import pl.edu.agh.internetshop.ShipmentMethod;
+import pl.edu.agh.internetshop.SurfaceMailBus;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts sends and sent shipments of a shipment method and records the send latency.
+class InstrumentedShipmentMethod implements ShipmentMethod {
+    private final Metrics metrics;
+    private final ShipmentMethod shipmentMethod;
+    private final LongAdder calls;
+    private final LongAdder sent;
+    private final LatencyHistogram latency;
+
+    InstrumentedShipmentMethod(Metrics metrics, String name, ShipmentMethod shipmentMethod) {
+        this.metrics = metrics;
+        this.shipmentMethod = shipmentMethod;
+        this.calls = metrics.counter("shipment." + name + ".send");
+        this.sent = metrics.counter("shipment." + name + ".sent");
+        this.latency = metrics.histogram("shipment." + name + ".send");
+    }
+
+    // keeps the SurfaceMailBus interface of the shipment method
+    static ShipmentMethod of(Metrics metrics, String name, ShipmentMethod shipmentMethod) {
+        if(shipmentMethod instanceof SurfaceMailBus) {
+            return new MailBus(metrics, name, (SurfaceMailBus) shipmentMethod);
+        }
+        return new InstrumentedShipmentMethod(metrics, name, shipmentMethod);
+    }
+
+    @Override
+    public boolean send(Object shipment, Address sender, Address recipient) {
+        if(!metrics.isEnabled()) return shipmentMethod.send(shipment, sender, recipient);
+        long start = System.nanoTime();
+        boolean result = shipmentMethod.send(shipment, sender, recipient);
+        latency.record(System.nanoTime() - start);
+        calls.increment();
+        if(result) sent.increment();
+        return result;
+    }
+
+    private static class MailBus extends InstrumentedShipmentMethod implements SurfaceMailBus {
+        private final SurfaceMailBus mailBus;
+
+        MailBus(Metrics metrics, String name, SurfaceMailBus mailBus) {
+            super(metrics, name, mailBus);
+            this.mailBus = mailBus;
+        }
+
+        @Override
+        public boolean isSent(Object shipment) {
+            return mailBus.isSent(shipment);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package pl.edu.agh.internetshop.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values, usually latencies in nanoseconds. Like an HDR
+ * histogram, buckets are log-linear: every power of two is split into {@value #SUB_BUCKETS}
+ * buckets, so any recorded value is reported within about 3% of its real value, and recording is a
+ * single atomic increment.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKETS + 2 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if(value < 0) value = 0;
+        counts.incrementAndGet(bucketOf(value));
+        long current = max.get();
+        while(value > current && !max.compareAndSet(current, value)) current = max.get();
+    }
+
+    static int bucketOf(long value) {
+        if(value < 2 * SUB_BUCKETS) return (int) value;
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS * shift + (int) (value >>> shift);
+    }
+
+    // the highest value which falls into the bucket
+    static long highestValueOf(int bucket) {
+        if(bucket < 2 * SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket - SUB_BUCKETS * shift) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for(int i = 0; i < BUCKETS; i++) copy[i] = counts.get(i);
+        return new HistogramSnapshot(copy, max.get());
+    }
+
+    // values recorded while resetting may be lost
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        max.set(0);
+    }
+}
@@ -0,0 +1,100 @@
+package pl.edu.agh.internetshop.metrics;
+
+import pl.edu.agh.internetshop.PaymentMethod;
+import pl.edu.agh.internetshop.ShipmentMethod;
+import pl.edu.agh.internetshop.search.SearchStrategy;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named counters and latency histograms, updated without locks. Payment methods, shipment methods
+ * and search strategies can be wrapped to count their calls and record their latencies, and search
+ * strategies additionally count the orders they check and match, from which their selectivity is
+ * reported. {@link #report(MetricsReporter)} passes a snapshot of everything to a reporter.
+ * <p>
+ * Disabled metrics record nothing: instrumented calls check a single volatile flag and go straight
+ * to the wrapped object, without reading the clock. {@link #DISABLED} is always disabled and is the
+ * default wherever metrics can be set.
+ */
+public class Metrics {
+    public static final Metrics DISABLED = new Metrics(false);
+    static final String SEARCH_PREFIX = "search.";
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    public Metrics() {
+        this(true);
+    }
+
+    private Metrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        if(this == DISABLED) throw new UnsupportedOperationException("Metrics.DISABLED cannot be enabled");
+        this.enabled = enabled;
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    // returns the start time to pass to stop, or 0 when disabled
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void stop(String histogram, long start) {
+        if(enabled && start != 0) histogram(histogram).record(System.nanoTime() - start);
+    }
+
+    public void increment(String counter) {
+        if(enabled) counter(counter).increment();
+    }
+
+    public void add(String counter, long value) {
+        if(enabled) counter(counter).add(value);
+    }
+
+    // keeps the MoneyTransferPaymentTransaction interface of the payment method
+    public PaymentMethod instrumentPayments(String name, PaymentMethod paymentMethod) {
+        return InstrumentedPaymentMethod.of(this, name, Objects.requireNonNull(paymentMethod));
+    }
+
+    // keeps the SurfaceMailBus interface of the shipment method
+    public ShipmentMethod instrumentShipments(String name, ShipmentMethod shipmentMethod) {
+        return InstrumentedShipmentMethod.of(this, name, Objects.requireNonNull(shipmentMethod));
+    }
+
+    // keeps the index and column support of the strategy
+    public SearchStrategy instrumentSearch(String name, SearchStrategy strategy) {
+        return new InstrumentedSearchStrategy(this, SEARCH_PREFIX + name, Objects.requireNonNull(strategy));
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<String, Long> counterValues = new TreeMap<>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.sum()));
+        Map<String, HistogramSnapshot> histogramValues = new TreeMap<>();
+        histograms.forEach((name, histogram) -> histogramValues.put(name, histogram.snapshot()));
+        return new MetricsSnapshot(counterValues, histogramValues);
+    }
+
+    public void report(MetricsReporter reporter) {
+        reporter.report(snapshot());
+    }
+}
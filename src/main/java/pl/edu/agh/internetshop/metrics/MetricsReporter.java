@@ -0,0 +1,5 @@
+package pl.edu.agh.internetshop.metrics;
+
+public interface MetricsReporter {
+    void report(MetricsSnapshot snapshot);
+}
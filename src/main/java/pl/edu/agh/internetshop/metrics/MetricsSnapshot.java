@@ -0,0 +1,33 @@
+package pl.edu.agh.internetshop.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+// Values of all counters and histograms of Metrics at one moment, sorted by name.
+public class MetricsSnapshot {
+    private final Map<String, Long> counters;
+    private final Map<String, HistogramSnapshot> histograms;
+
+    MetricsSnapshot(Map<String, Long> counters, Map<String, HistogramSnapshot> histograms) {
+        this.counters = Collections.unmodifiableMap(counters);
+        this.histograms = Collections.unmodifiableMap(histograms);
+    }
+
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    public Map<String, HistogramSnapshot> getHistograms() {
+        return histograms;
+    }
+
+    public long getCounter(String name) {
+        return counters.getOrDefault(name, 0L);
+    }
+
+    // the fraction of orders checked by the named search strategy which matched it
+    public double getSelectivity(String strategyName) {
+        long evaluated = getCounter(Metrics.SEARCH_PREFIX + strategyName + ".evaluated");
+        return evaluated == 0 ? 0 : (double) getCounter(Metrics.SEARCH_PREFIX + strategyName + ".matched") / evaluated;
+    }
+}
@@ -0,0 +1,63 @@
+package pl.edu.agh.internetshop.search;
+
+/**
+ * Set of strings which may claim to contain strings that were never added, with about the given
+ * probability, but never misses one that was. Adding more strings than expected only makes false
+ * positives more likely. Strings are added by one thread at a time, readers see the strings added
+ * before the filter was safely published to them.
+ */
+public class BloomFilter {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    public BloomFilter(int expectedInsertions, double falsePositiveProbability) {
+        if(expectedInsertions < 1) throw new IllegalArgumentException("Expected insertions must be positive");
+        if(!(falsePositiveProbability > 0 && falsePositiveProbability < 1)) {
+            throw new IllegalArgumentException("False positive probability must be in range 0 to 1");
+        }
+        double optimalBits = -expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+        this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (long) Math.ceil(optimalBits / Long.SIZE))];
+        this.bitCount = (long) bits.length * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+        int first = (int) hash;
+        // odd, so no probe repeats the first and consecutive probes never coincide
+        int second = (int) (hash >>> 32) | 1;
+        for(int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(first + (long) i * second, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        int first = (int) hash;
+        // odd, so no probe repeats the first and consecutive probes never coincide
+        int second = (int) (hash >>> 32) | 1;
+        for(int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(first + (long) i * second, bitCount);
+            if((bits[(int) (bit >>> 6)] & 1L << bit) == 0) return false;
+        }
+        return true;
+    }
+
+    // 64-bit FNV-1a over the chars, mixed by the finalizer of MurmurHash3; the 32-bit String hash
+    // would give strings colliding in it the same probes
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
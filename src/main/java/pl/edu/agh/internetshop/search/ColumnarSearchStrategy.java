@@ -0,0 +1,11 @@
+package pl.edu.agh.internetshop.search;
+
+import java.util.function.IntPredicate;
+
+public interface ColumnarSearchStrategy extends SearchStrategy {
+    /**
+     * Returns a predicate over rows of the given columns which matches the same orders as
+     * {@link #filter(pl.edu.agh.internetshop.Order)}, or null when the strategy needs whole orders.
+     */
+    IntPredicate compile(OrderColumns columns);
+}
@@ -2,18 +2,144 @@ package pl.edu.agh.internetshop.search;
 
 import pl.edu.agh.internetshop.Order;
 
-import java.util.Arrays;
-import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
 
-public class CompositeSearchStrategy implements SearchStrategy {
-    List<SearchStrategy> strategies;
+/**
+ * Matches orders accepted by all of its strategies. Strategies are evaluated cheapest and most
+ * selective first: every strategy keeps statistics of how often it passes and (on sampled calls)
+ * how long it takes, and the evaluation order is recomputed from them on randomly chosen calls.
+ * Only {@link ExceptionFreeSearchStrategy exception-free} strategies are moved, and never past
+ * another strategy, since that one may rely on the strategies before it, e.g. to reject orders
+ * without a shipment. Statistics are kept in LongAdders, as parallel scans evaluate the strategy
+ * concurrently.
+ */
+public class CompositeSearchStrategy implements IndexedSearchStrategy, ColumnarSearchStrategy, PrunableSearchStrategy {
+    // average number of calls between reorders, a power of two
+    static final int REORDER_INTERVAL = 1024;
+    private static final int SAMPLE_MASK = 15;
+
+    private volatile Child[] children;
 
     public CompositeSearchStrategy(SearchStrategy... strategies) {
-        this.strategies = Arrays.asList(strategies);
+        this.children = new Child[strategies.length];
+        for(int i = 0; i < strategies.length; i++) children[i] = new Child(strategies[i]);
     }
 
     @Override
     public boolean filter(Order order) {
-        return strategies.stream().allMatch(strategy -> strategy.filter(order));
+        // random rather than counted, so concurrent scans do not contend on a call counter
+        int random = ThreadLocalRandom.current().nextInt();
+        if((random >>> 16 & REORDER_INTERVAL - 1) == 0) reorder();
+        boolean sampled = (random & SAMPLE_MASK) == 0;
+        for(Child child: children) {
+            boolean passed;
+            if(sampled) {
+                long start = System.nanoTime();
+                passed = child.strategy.filter(order);
+                child.sampledNanos.add(System.nanoTime() - start);
+                child.samples.increment();
+            } else {
+                passed = child.strategy.filter(order);
+            }
+            child.evaluations.increment();
+            if(!passed) return false;
+            child.passed.increment();
+        }
+        return true;
+    }
+
+    @Override
+    public PostingList lookup(SearchIndexes indexes) {
+        PostingList candidates = null;
+        for(Child child: children) {
+            if(!(child.strategy instanceof IndexedSearchStrategy)) continue;
+            PostingList positions = ((IndexedSearchStrategy) child.strategy).lookup(indexes);
+            if(positions == null) continue;
+            candidates = candidates == null ? positions : PostingList.intersection(candidates, positions);
+            if(candidates.isEmpty()) break;
+        }
+        return candidates;
+    }
+
+    // a segment can be skipped when any of the strategies skips it
+    @Override
+    public boolean mayMatch(SegmentSummary summary) {
+        for(Child child: children) {
+            if(child.strategy instanceof PrunableSearchStrategy && !((PrunableSearchStrategy) child.strategy).mayMatch(summary)) return false;
+        }
+        return true;
+    }
+
+    // sorts every run of exception-free strategies, the others keep their positions
+    private void reorder() {
+        Child[] reordered = children.clone();
+        double[] ranks = new double[reordered.length];
+        int start = 0;
+        for(int i = 0; i <= reordered.length; i++) {
+            if(i == reordered.length || !(reordered[i].strategy instanceof ExceptionFreeSearchStrategy)) {
+                if(i - start > 1) {
+                    for(int j = start; j < i; j++) ranks[j] = reordered[j].rank();
+                    sortByRank(reordered, ranks, start, i);
+                }
+                start = i + 1;
+            }
+        }
+        children = reordered;
+    }
+
+    // ranks are computed once, counters keep changing while the strategies are sorted
+    private static void sortByRank(Child[] children, double[] ranks, int from, int to) {
+        for(int i = from + 1; i < to; i++) {
+            Child child = children[i];
+            double rank = ranks[i];
+            int j = i;
+            for(; j > from && ranks[j - 1] > rank; j--) {
+                children[j] = children[j - 1];
+                ranks[j] = ranks[j - 1];
+            }
+            children[j] = child;
+            ranks[j] = rank;
+        }
+    }
+
+    private static class Child {
+        final SearchStrategy strategy;
+        final LongAdder evaluations = new LongAdder();
+        final LongAdder passed = new LongAdder();
+        final LongAdder samples = new LongAdder();
+        final LongAdder sampledNanos = new LongAdder();
+
+        Child(SearchStrategy strategy) {
+            this.strategy = strategy;
+        }
+
+        // expected cost of evaluating the strategy per order it rejects, lower goes first
+        double rank() {
+            long evaluations = this.evaluations.sum();
+            if(evaluations == 0) return 0;
+            long samples = this.samples.sum();
+            double cost = samples == 0 ? 1 : Math.max(1, (double) sampledNanos.sum() / samples);
+            double rejectRate = 1 - (double) Math.min(passed.sum(), evaluations) / evaluations;
+            return cost / Math.max(rejectRate, 1e-6);
+        }
+    }
+
+    @Override
+    public IntPredicate compile(OrderColumns columns) {
+        Child[] children = this.children;
+        IntPredicate[] predicates = new IntPredicate[children.length];
+        for(int i = 0; i < children.length; i++) {
+            if(!(children[i].strategy instanceof ColumnarSearchStrategy)) return null;
+            predicates[i] = ((ColumnarSearchStrategy) children[i].strategy).compile(columns);
+            if(predicates[i] == null) return null;
+        }
+        return row -> {
+            for(IntPredicate predicate: predicates) {
+                if(!predicate.test(row)) return false;
+            }
+            return true;
+        };
     }
 }
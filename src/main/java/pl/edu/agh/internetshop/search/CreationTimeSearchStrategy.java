@@ -0,0 +1,48 @@
+package pl.edu.agh.internetshop.search;
+
+import pl.edu.agh.internetshop.Order;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+// Matches orders created from the start time, inclusive, until the end time, exclusive.
+public class CreationTimeSearchStrategy implements ColumnarSearchStrategy, ExceptionFreeSearchStrategy {
+    private final Instant from;
+    private final Instant to;
+
+    public CreationTimeSearchStrategy(Instant from, Instant to) {
+        this.from = Objects.requireNonNull(from);
+        this.to = Objects.requireNonNull(to);
+        if(from.isAfter(to)) throw new IllegalArgumentException("Start time cannot be after end time");
+    }
+
+    public Instant getFrom() {
+        return from;
+    }
+
+    public Instant getTo() {
+        return to;
+    }
+
+    @Override
+    public boolean filter(Order order) {
+        Instant creationTime = order.getCreationTime();
+        return creationTime != null && !creationTime.isBefore(from) && creationTime.isBefore(to);
+    }
+
+    @Override
+    public IntPredicate compile(OrderColumns columns) {
+        long fromSecond = from.getEpochSecond();
+        int fromNano = from.getNano();
+        long toSecond = to.getEpochSecond();
+        int toNano = to.getNano();
+        return row -> {
+            long second = columns.getCreationEpochSecond(row);
+            int nano = columns.getCreationNano(row);
+            boolean afterFrom = second > fromSecond || second == fromSecond && nano >= fromNano;
+            boolean beforeTo = second < toSecond || second == toSecond && nano < toNano;
+            return afterFrom && beforeTo;
+        };
+    }
+}
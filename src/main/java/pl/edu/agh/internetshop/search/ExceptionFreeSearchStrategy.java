@@ -0,0 +1,13 @@
+package pl.edu.agh.internetshop.search;
+
+import pl.edu.agh.internetshop.Order;
+
+public interface ExceptionFreeSearchStrategy extends SearchStrategy {
+    /**
+     * Like {@link SearchStrategy#filter(Order)}, but never throws for any order, so it does not
+     * rely on other strategies rejecting orders before it and {@link CompositeSearchStrategy} may
+     * evaluate it in any order.
+     */
+    @Override
+    boolean filter(Order order);
+}
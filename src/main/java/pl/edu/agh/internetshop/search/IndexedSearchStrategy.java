@@ -0,0 +1,10 @@
+package pl.edu.agh.internetshop.search;
+
+public interface IndexedSearchStrategy extends SearchStrategy {
+    /**
+     * Returns positions of orders which may match this strategy, or null when
+     * the indexes cannot answer it. Every candidate is still checked with
+     * {@link #filter(pl.edu.agh.internetshop.Order)}.
+     */
+    PostingList lookup(SearchIndexes indexes);
+}
@@ -0,0 +1,26 @@
+package pl.edu.agh.internetshop.search;
+
+import java.util.BitSet;
+
+// Read access to orders kept in columns; rows are numbered from 0 in insertion order.
+public interface OrderColumns {
+    int size();
+
+    long getTotalPriceMinorUnits(int row);
+
+    long getCreationEpochSecond(int row);
+
+    int getCreationNano(int row);
+
+    // -1 when the order had no shipment
+    int getRecipientNameId(int row);
+
+    // -1 when no order has this recipient
+    int findRecipientNameId(String recipientName);
+
+    int getProductCount(int row);
+
+    int getProductId(int row, int index);
+
+    BitSet findProductIdsByName(String productName);
+}
@@ -0,0 +1,125 @@
+package pl.edu.agh.internetshop.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+public class PostingList {
+    public static final PostingList EMPTY = new PostingList(new int[0], 0);
+
+    // a single writer appends while readers take snapshots: a grown array is published before the
+    // size, and published positions are never moved, so a reader sees a consistent prefix
+    private volatile int[] positions;
+    private volatile int size;
+    private boolean ascending = true;
+
+    public PostingList() {
+        this(new int[4], 0);
+    }
+
+    private PostingList(int[] positions, int size) {
+        this.positions = positions;
+        this.size = size;
+    }
+
+    public void add(int position) {
+        int size = this.size;
+        int[] positions = this.positions;
+        if(size > 0) {
+            int last = positions[size - 1];
+            if(last == position) return;
+            if(last > position) ascending = false;
+        }
+        if(size == positions.length) positions = Arrays.copyOf(positions, Math.max(4, size * 2));
+        positions[size] = position;
+        this.positions = positions;
+        this.size = size + 1;
+    }
+
+    public int get(int index) {
+        if(index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        return positions[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // a copy without the position, for writers which replace a list instead of changing it
+    public PostingList without(int position) {
+        int size = this.size;
+        int[] positions = this.positions;
+        int[] rest = new int[Math.max(4, size)];
+        int k = 0;
+        for(int i = 0; i < size; i++) {
+            if(positions[i] != position) rest[k++] = positions[i];
+        }
+        PostingList postingList = new PostingList(rest, k);
+        postingList.ascending = ascending;
+        return postingList;
+    }
+
+    public PostingList snapshot() {
+        int size = this.size;
+        if(size == 0) return EMPTY;
+        int[] copy = Arrays.copyOf(this.positions, size);
+        return ascending ? new PostingList(copy, size) : sorted(copy, size);
+    }
+
+    public static PostingList union(PostingList a, PostingList b) {
+        if(b.isEmpty()) return a;
+        if(a.isEmpty()) return b;
+        int[] p = a.positions, q = b.positions;
+        int m = a.size, n = b.size;
+        int[] merged = new int[m + n];
+        int i = 0, j = 0, k = 0;
+        while(i < m && j < n) {
+            int x = p[i], y = q[j];
+            if(x <= y) i++;
+            if(y <= x) j++;
+            merged[k++] = Math.min(x, y);
+        }
+        while(i < m) merged[k++] = p[i++];
+        while(j < n) merged[k++] = q[j++];
+        return new PostingList(merged, k);
+    }
+
+    public static PostingList intersection(PostingList a, PostingList b) {
+        if(a.isEmpty() || b.isEmpty()) return EMPTY;
+        int[] p = a.positions, q = b.positions;
+        int m = a.size, n = b.size;
+        int[] common = new int[Math.min(m, n)];
+        int i = 0, j = 0, k = 0;
+        while(i < m && j < n) {
+            int x = p[i], y = q[j];
+            if(x <= y) i++;
+            if(y <= x) j++;
+            if(x == y) common[k++] = x;
+        }
+        return new PostingList(common, k);
+    }
+
+    public static PostingList unionAll(Collection<PostingList> postingLists) {
+        int[] merged = new int[16];
+        int k = 0;
+        for(PostingList postingList: postingLists) {
+            int size = postingList.size;
+            if(k + size > merged.length) merged = Arrays.copyOf(merged, Math.max(merged.length * 2, k + size));
+            System.arraycopy(postingList.positions, 0, merged, k, size);
+            k += size;
+        }
+        return k == 0 ? EMPTY : sorted(merged, k);
+    }
+
+    private static PostingList sorted(int[] positions, int size) {
+        Arrays.sort(positions, 0, size);
+        int distinct = 0;
+        for(int i = 0; i < size; i++) {
+            if(distinct == 0 || positions[distinct - 1] != positions[i]) positions[distinct++] = positions[i];
+        }
+        return new PostingList(positions, distinct);
+    }
+}
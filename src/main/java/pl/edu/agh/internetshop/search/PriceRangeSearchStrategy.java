@@ -0,0 +1,53 @@
+package pl.edu.agh.internetshop.search;
+
+import pl.edu.agh.internetshop.Order;
+import pl.edu.agh.internetshop.Product;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+public class PriceRangeSearchStrategy implements IndexedSearchStrategy, ColumnarSearchStrategy {
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+
+    public PriceRangeSearchStrategy(BigDecimal minPrice, BigDecimal maxPrice) {
+        this.minPrice = Objects.requireNonNull(minPrice);
+        this.maxPrice = Objects.requireNonNull(maxPrice);
+        if(minPrice.compareTo(maxPrice) > 0) throw new IllegalArgumentException("Minimal price cannot be greater than maximal price");
+    }
+
+    public static PriceRangeSearchStrategy around(BigDecimal price, BigDecimal tolerance) {
+        if(tolerance.signum() < 0) throw new IllegalArgumentException("Tolerance cannot be negative");
+        return new PriceRangeSearchStrategy(price.subtract(tolerance), price.add(tolerance));
+    }
+
+    @Override
+    public boolean filter(Order order) {
+        BigDecimal totalPrice = order.getTotalPrice();
+        return totalPrice.compareTo(minPrice) >= 0 && totalPrice.compareTo(maxPrice) <= 0;
+    }
+
+    @Override
+    public PostingList lookup(SearchIndexes indexes) {
+        return indexes.findByTotalPrice(minPrice, maxPrice);
+    }
+
+    @Override
+    public IntPredicate compile(OrderColumns columns) {
+        long min = toMinorUnits(minPrice.setScale(Product.PRICE_PRECISION, RoundingMode.CEILING));
+        long max = toMinorUnits(maxPrice.setScale(Product.PRICE_PRECISION, RoundingMode.FLOOR));
+        return row -> {
+            long totalPrice = columns.getTotalPriceMinorUnits(row);
+            return totalPrice >= min && totalPrice <= max;
+        };
+    }
+
+    private static long toMinorUnits(BigDecimal price) {
+        BigInteger unscaled = price.unscaledValue();
+        if(unscaled.bitLength() < Long.SIZE) return unscaled.longValue();
+        return unscaled.signum() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+}
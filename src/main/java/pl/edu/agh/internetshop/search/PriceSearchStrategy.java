@@ -1,11 +1,12 @@
 package pl.edu.agh.internetshop.search;
 
 import pl.edu.agh.internetshop.Order;
+import pl.edu.agh.internetshop.Product;
 
 import java.math.BigDecimal;
-import java.util.Objects;
+import java.util.function.IntPredicate;
 
-public class PriceSearchStrategy implements SearchStrategy {
+public class PriceSearchStrategy implements IndexedSearchStrategy, ColumnarSearchStrategy {
     private BigDecimal price;
 
     public PriceSearchStrategy(BigDecimal price) {
@@ -16,4 +17,17 @@ public class PriceSearchStrategy implements SearchStrategy {
     public boolean filter(Order order) {
         return order.getTotalPrice().equals(price);
     }
+
+    @Override
+    public PostingList lookup(SearchIndexes indexes) {
+        return indexes.findByTotalPrice(price, price);
+    }
+
+    @Override
+    public IntPredicate compile(OrderColumns columns) {
+        // no total price equals null; total prices always have Product.PRICE_PRECISION digits, so equals fails for any other scale
+        if(price == null || price.scale() != Product.PRICE_PRECISION || price.unscaledValue().bitLength() >= Long.SIZE) return row -> false;
+        long minorUnits = price.unscaledValue().longValue();
+        return row -> columns.getTotalPriceMinorUnits(row) == minorUnits;
+    }
 }
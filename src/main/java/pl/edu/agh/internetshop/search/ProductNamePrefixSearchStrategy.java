@@ -0,0 +1,23 @@
+package pl.edu.agh.internetshop.search;
+
+import pl.edu.agh.internetshop.Order;
+
+import java.util.Objects;
+
+public class ProductNamePrefixSearchStrategy implements IndexedSearchStrategy {
+    private final String prefix;
+
+    public ProductNamePrefixSearchStrategy(String prefix) {
+        this.prefix = Objects.requireNonNull(prefix);
+    }
+
+    @Override
+    public boolean filter(Order order) {
+        return order.getProducts().stream().anyMatch(product -> product.getName() != null && product.getName().startsWith(prefix));
+    }
+
+    @Override
+    public PostingList lookup(SearchIndexes indexes) {
+        return indexes.findByProductNamePrefix(prefix);
+    }
+}
@@ -2,7 +2,10 @@ package pl.edu.agh.internetshop.search;
 
 import pl.edu.agh.internetshop.Order;
 
-public class ProductNameSearchStrategy implements SearchStrategy {
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+public class ProductNameSearchStrategy implements IndexedSearchStrategy, ColumnarSearchStrategy, PrunableSearchStrategy {
     private String productName;
 
     public ProductNameSearchStrategy(String productName) {
@@ -13,4 +16,27 @@ public class ProductNameSearchStrategy implements SearchStrategy {
     public boolean filter(Order order) {
         return order.getProducts().stream().anyMatch(product -> product.getName().equals(this.productName));
     }
+
+    @Override
+    public PostingList lookup(SearchIndexes indexes) {
+        return indexes.findByProductName(productName);
+    }
+
+    @Override
+    public boolean mayMatch(SegmentSummary summary) {
+        return summary.mightContainProductName(productName);
+    }
+
+    @Override
+    public IntPredicate compile(OrderColumns columns) {
+        BitSet productIds = columns.findProductIdsByName(productName);
+        if(productIds.isEmpty()) return row -> false;
+        return row -> {
+            int productCount = columns.getProductCount(row);
+            for(int i = 0; i < productCount; i++) {
+                if(productIds.get(columns.getProductId(row, i))) return true;
+            }
+            return false;
+        };
+    }
 }
@@ -0,0 +1,23 @@
+package pl.edu.agh.internetshop.search;
+
+import pl.edu.agh.internetshop.Order;
+
+import java.util.Objects;
+
+public class ProductNameSubstringSearchStrategy implements IndexedSearchStrategy {
+    private final String substring;
+
+    public ProductNameSubstringSearchStrategy(String substring) {
+        this.substring = Objects.requireNonNull(substring);
+    }
+
+    @Override
+    public boolean filter(Order order) {
+        return order.getProducts().stream().anyMatch(product -> product.getName() != null && product.getName().contains(substring));
+    }
+
+    @Override
+    public PostingList lookup(SearchIndexes indexes) {
+        return indexes.findByProductNameSubstring(substring);
+    }
+}
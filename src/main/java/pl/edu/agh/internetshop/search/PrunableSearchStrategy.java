@@ -0,0 +1,11 @@
+package pl.edu.agh.internetshop.search;
+
+public interface PrunableSearchStrategy extends SearchStrategy {
+    /**
+     * Returns false when no order of the summarized segment can match this
+     * strategy, so the segment can be skipped. True does not mean any of them
+     * matches, its orders are still checked with
+     * {@link #filter(pl.edu.agh.internetshop.Order)}.
+     */
+    boolean mayMatch(SegmentSummary summary);
+}
@@ -2,7 +2,9 @@ package pl.edu.agh.internetshop.search;
 
 import pl.edu.agh.internetshop.Order;
 
-public class RecipientSearchStrategy implements SearchStrategy {
+import java.util.function.IntPredicate;
+
+public class RecipientSearchStrategy implements IndexedSearchStrategy, ColumnarSearchStrategy, PrunableSearchStrategy {
     private String recipientName;
 
     public RecipientSearchStrategy(String recipientName) {
@@ -13,4 +15,21 @@ public class RecipientSearchStrategy implements SearchStrategy {
     public boolean filter(Order order) {
         return order.getRecipientName().equals(recipientName);
     }
+
+    @Override
+    public PostingList lookup(SearchIndexes indexes) {
+        return indexes.findByRecipientName(recipientName);
+    }
+
+    @Override
+    public boolean mayMatch(SegmentSummary summary) {
+        return summary.mightContainRecipientName(recipientName);
+    }
+
+    @Override
+    public IntPredicate compile(OrderColumns columns) {
+        int recipientNameId = columns.findRecipientNameId(recipientName);
+        if(recipientNameId < 0) return row -> false;
+        return row -> columns.getRecipientNameId(row) == recipientNameId;
+    }
 }
@@ -0,0 +1,193 @@
+package pl.edu.agh.internetshop.search;
+
+import pl.edu.agh.internetshop.Order;
+import pl.edu.agh.internetshop.Product;
+import pl.edu.agh.internetshop.Shipment;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Indexes may be updated by one thread at a time and read by any number of threads concurrently.
+public class SearchIndexes {
+    // posted key of orders which had no recipient address
+    private static final Object UNKNOWN = new Object();
+
+    private final Map<String, PostingList> recipients = new ConcurrentHashMap<>();
+    private final Map<String, PostingList> productNames = new ConcurrentHashMap<>();
+    // distinct product names, sorted for prefix lookups and by their trigrams for substring lookups
+    private final NavigableSet<String> sortedProductNames = new ConcurrentSkipListSet<>();
+    private final Map<String, Set<String>> productNameTrigrams = new ConcurrentHashMap<>();
+    // orders added before their shipment was known, they have to be checked one by one
+    private volatile PostingList unknownRecipients = new PostingList();
+    // keys are compared with compareTo, so 10.0 and 10.00 share one entry
+    private final NavigableMap<BigDecimal, PostingList> totalPrices = new ConcurrentSkipListMap<>();
+    private volatile PostingList unknownTotalPrices = new PostingList();
+    // keys every position is posted under, so a re-indexed order leaves none of its old postings;
+    // only used by the updating thread
+    private Object[] postedRecipients = new Object[16];
+    private BigDecimal[] postedTotalPrices = new BigDecimal[16];
+
+    public void add(Order order, int position) {
+        if(position >= postedRecipients.length) {
+            int length = Math.max(postedRecipients.length * 2, position + 1);
+            postedRecipients = Arrays.copyOf(postedRecipients, length);
+            postedTotalPrices = Arrays.copyOf(postedTotalPrices, length);
+        }
+        postRecipient(recipientKey(order), position);
+        List<Product> products = order.getProducts();
+        if(products != null) {
+            for(Product product: products) postProductName(product.getName(), position);
+        }
+        postTotalPrice(order.getTotalPrice(), position);
+    }
+
+    /**
+     * Posts an added order again after its price or shipment changed. Postings under its old
+     * total price and recipient are replaced by copies without the order, which readers holding
+     * the old ones do not notice. Returns whether the recipient of the order changed.
+     */
+    public boolean reindex(Order order, int position) {
+        Object recipient = recipientKey(order);
+        Object postedRecipient = postedRecipients[position];
+        boolean recipientChanged = !Objects.equals(recipient, postedRecipient);
+        if(recipientChanged) {
+            if(postedRecipient == UNKNOWN) {
+                unknownRecipients = unknownRecipients.without(position);
+            } else if(postedRecipient != null) {
+                unpost(recipients, (String) postedRecipient, position);
+            }
+            postRecipient(recipient, position);
+        }
+        BigDecimal totalPrice = order.getTotalPrice();
+        BigDecimal postedTotalPrice = postedTotalPrices[position];
+        if(totalPrice == null ? postedTotalPrice != null : postedTotalPrice == null || totalPrice.compareTo(postedTotalPrice) != 0) {
+            if(postedTotalPrice == null) {
+                unknownTotalPrices = unknownTotalPrices.without(position);
+            } else {
+                unpost(totalPrices, postedTotalPrice, position);
+            }
+            postTotalPrice(totalPrice, position);
+        }
+        return recipientChanged;
+    }
+
+    private static Object recipientKey(Order order) {
+        Shipment shipment = order.getShipment();
+        if(shipment == null || shipment.getRecipientAddress() == null) return UNKNOWN;
+        return shipment.getRecipientAddress().getName();
+    }
+
+    private void postRecipient(Object recipient, int position) {
+        postedRecipients[position] = recipient;
+        if(recipient == UNKNOWN) {
+            unknownRecipients.add(position);
+        } else if(recipient != null) {
+            recipients.computeIfAbsent((String) recipient, k -> new PostingList()).add(position);
+        }
+    }
+
+    private void postTotalPrice(BigDecimal totalPrice, int position) {
+        postedTotalPrices[position] = totalPrice;
+        if(totalPrice == null) {
+            unknownTotalPrices.add(position);
+        } else {
+            totalPrices.computeIfAbsent(totalPrice, k -> new PostingList()).add(position);
+        }
+    }
+
+    private static <K> void unpost(Map<K, PostingList> index, K key, int position) {
+        PostingList postingList = index.get(key);
+        if(postingList == null) return;
+        PostingList rest = postingList.without(position);
+        if(rest.isEmpty()) {
+            index.remove(key);
+        } else {
+            index.put(key, rest);
+        }
+    }
+
+    // no recipient is indexed under a null name, orders without one are still candidates
+    public PostingList findByRecipientName(String recipientName) {
+        PostingList postingList = recipientName == null ? null : recipients.get(recipientName);
+        return PostingList.union(snapshot(postingList), unknownRecipients.snapshot());
+    }
+
+    public PostingList findByProductName(String productName) {
+        if(productName == null) return PostingList.EMPTY;
+        return snapshot(productNames.get(productName));
+    }
+
+    public PostingList findByProductNamePrefix(String prefix) {
+        if(prefix.isEmpty()) return findByProductNames(sortedProductNames);
+        char last = prefix.charAt(prefix.length() - 1);
+        if(last == Character.MAX_VALUE) return findByProductNames(sortedProductNames.tailSet(prefix, true));
+        String end = prefix.substring(0, prefix.length() - 1) + (char) (last + 1);
+        return findByProductNames(sortedProductNames.subSet(prefix, true, end, false));
+    }
+
+    // names sharing every trigram of the substring are candidates, shorter substrings check all names
+    public PostingList findByProductNameSubstring(String substring) {
+        Collection<String> candidates = sortedProductNames;
+        if(substring.length() >= 3) {
+            Set<String> common = null;
+            for(int i = 0; i + 3 <= substring.length(); i++) {
+                Set<String> names = productNameTrigrams.get(substring.substring(i, i + 3));
+                if(names == null) return PostingList.EMPTY;
+                if(common == null) {
+                    common = new HashSet<>(names);
+                } else {
+                    common.retainAll(names);
+                }
+                if(common.isEmpty()) return PostingList.EMPTY;
+            }
+            candidates = common;
+        }
+        List<String> matching = new ArrayList<>();
+        for(String name: candidates) {
+            if(name.contains(substring)) matching.add(name);
+        }
+        return findByProductNames(matching);
+    }
+
+    private PostingList findByProductNames(Collection<String> names) {
+        List<PostingList> postingLists = new ArrayList<>(names.size());
+        for(String name: names) postingLists.add(snapshot(productNames.get(name)));
+        return PostingList.unionAll(postingLists);
+    }
+
+    // no price is indexed under a null bound, orders without one are still candidates
+    public PostingList findByTotalPrice(BigDecimal min, BigDecimal max) {
+        if(min == null || max == null || min.compareTo(max) > 0) return unknownTotalPrices.snapshot();
+        return PostingList.union(PostingList.unionAll(totalPrices.subMap(min, true, max, true).values()), unknownTotalPrices.snapshot());
+    }
+
+    private static PostingList snapshot(PostingList postingList) {
+        return postingList == null ? PostingList.EMPTY : postingList.snapshot();
+    }
+
+    private void postProductName(String name, int position) {
+        if(name == null) return;
+        PostingList postingList = productNames.get(name);
+        if(postingList == null) {
+            postingList = new PostingList();
+            productNames.put(name, postingList);
+            sortedProductNames.add(name);
+            for(int i = 0; i + 3 <= name.length(); i++) {
+                productNameTrigrams.computeIfAbsent(name.substring(i, i + 3), k -> ConcurrentHashMap.newKeySet()).add(name);
+            }
+        }
+        postingList.add(position);
+    }
+}
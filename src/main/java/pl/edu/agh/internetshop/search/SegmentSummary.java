@@ -0,0 +1,56 @@
+package pl.edu.agh.internetshop.search;
+
+import pl.edu.agh.internetshop.Order;
+import pl.edu.agh.internetshop.Product;
+import pl.edu.agh.internetshop.Shipment;
+
+import java.util.List;
+
+/**
+ * Bloom filters over the product and recipient names of the orders in one segment of a history,
+ * so searches for a name which none of them has can skip the whole segment. Like
+ * {@link SearchIndexes}, orders are summarized when they are added, and orders without a recipient
+ * make every recipient name possible. Names cannot be removed, so a segment whose recipients changed
+ * is summarized again by a new summary. Orders are added by one thread at a time.
+ */
+public class SegmentSummary {
+    public static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+    // used to size the product name filter
+    private static final int EXPECTED_PRODUCTS_PER_ORDER = 4;
+
+    private final BloomFilter productNames;
+    private final BloomFilter recipientNames;
+    private boolean unknownRecipients;
+
+    public SegmentSummary(int expectedOrders) {
+        this.productNames = new BloomFilter(expectedOrders * EXPECTED_PRODUCTS_PER_ORDER, FALSE_POSITIVE_PROBABILITY);
+        this.recipientNames = new BloomFilter(expectedOrders, FALSE_POSITIVE_PROBABILITY);
+    }
+
+    public void add(Order order) {
+        addRecipient(order);
+        List<Product> products = order.getProducts();
+        if(products != null) {
+            for(Product product: products) {
+                if(product.getName() != null) productNames.add(product.getName());
+            }
+        }
+    }
+
+    private void addRecipient(Order order) {
+        Shipment shipment = order.getShipment();
+        if(shipment == null || shipment.getRecipientAddress() == null) {
+            unknownRecipients = true;
+        } else if(shipment.getRecipientAddress().getName() != null) {
+            recipientNames.add(shipment.getRecipientAddress().getName());
+        }
+    }
+
+    public boolean mightContainProductName(String productName) {
+        return productName != null && productNames.mightContain(productName);
+    }
+
+    public boolean mightContainRecipientName(String recipientName) {
+        return unknownRecipients || recipientName != null && recipientNames.mightContain(recipientName);
+    }
+}
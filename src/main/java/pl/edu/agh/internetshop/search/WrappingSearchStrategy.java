@@ -0,0 +1,10 @@
+package pl.edu.agh.internetshop.search;
+
+public interface WrappingSearchStrategy extends SearchStrategy {
+    /**
+     * Returns the strategy this one delegates to. It matches the same orders, so
+     * histories may look at it to narrow a search, e.g. to a time range, while
+     * still checking orders with this strategy.
+     */
+    SearchStrategy getWrapped();
+}
@@ -0,0 +1,170 @@
+package pl.edu.agh.internetshop;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchPricingEngineTest {
+    private static List<Order> randomOrders(int count, Random random) {
+        List<Order> orders = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            List<Product> products = new ArrayList<>();
+            int productCount = 1 + random.nextInt(5);
+            for(int j = 0; j < productCount; j++) {
+                products.add(new Product("Product " + random.nextInt(50), BigDecimal.valueOf(1 + random.nextInt(100000), 2)));
+            }
+            Order order = new Order(products);
+            if(random.nextBoolean()) order.setDiscount(products.get(0), BigDecimal.valueOf(1 + random.nextInt(99), 2));
+            if(random.nextBoolean()) order.setGeneralDiscount(BigDecimal.valueOf(1 + random.nextInt(999), 3));
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    private static DiscountPlan randomPlan(long seed) {
+        return order -> {
+            int value = new Random(seed ^ order.getId().getLeastSignificantBits()).nextInt(1000);
+            return value == 0 ? null : BigDecimal.valueOf(value, 3);
+        };
+    }
+
+    @Test
+    public void totalPricesMatchOrderPricing() {
+        // given
+        List<Order> orders = randomOrders(5000, new Random(42));
+        DiscountPlan plan = randomPlan(7);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        // when
+        long[] totalPrices = new BatchPricingEngine(pool).computeTotalPrices(orders, plan);
+
+        // then
+        for(int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            BigDecimal generalDiscount = plan.getGeneralDiscount(order);
+            if(generalDiscount != null) order.setGeneralDiscount(generalDiscount);
+            assertEquals(order.getTotalPrice(), BigDecimal.valueOf(totalPrices[i], Product.PRICE_PRECISION));
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void computeTotalPricesDoesNotChangeOrders() {
+        // given
+        Order order = new Order(Collections.singletonList(new Product("Milk", new BigDecimal("10.00"))));
+
+        // when
+        long[] totalPrices = new BatchPricingEngine().computeTotalPrices(Collections.singletonList(order), DiscountPlan.uniform(new BigDecimal("0.5")));
+
+        // then
+        assertEquals(615, totalPrices[0]);
+        assertEquals(BigDecimal.ZERO, order.getGeneralDiscount());
+        assertEquals(new BigDecimal("12.30"), order.getTotalPrice());
+    }
+
+    @Test
+    public void applySetsDiscounts() {
+        // given
+        List<Order> orders = randomOrders(100, new Random(1));
+        DiscountPlan plan = DiscountPlan.uniform(new BigDecimal("0.15"));
+
+        // when
+        long[] totalPrices = new BatchPricingEngine().apply(orders, plan);
+
+        // then
+        for(int i = 0; i < orders.size(); i++) {
+            assertEquals(new BigDecimal("0.15"), orders.get(i).getGeneralDiscount());
+            assertEquals(orders.get(i).getTotalPrice(), BigDecimal.valueOf(totalPrices[i], Product.PRICE_PRECISION));
+        }
+    }
+
+    @Test
+    public void applyRunsPlanOnceAndRepricesOrdersOnce() {
+        // given
+        List<Order> orders = randomOrders(100, new Random(2));
+        AtomicInteger planCalls = new AtomicInteger();
+        DiscountPlan plan = order -> {
+            planCalls.incrementAndGet();
+            return new BigDecimal("0.25");
+        };
+        List<BigDecimal> notifiedTotalPrices = new ArrayList<>();
+        for(Order order: orders) order.addPriceChangeListener(repriced -> notifiedTotalPrices.add(repriced.getTotalPrice()));
+
+        // when
+        long[] totalPrices = new BatchPricingEngine().apply(orders, plan);
+
+        // then
+        assertEquals(orders.size(), planCalls.get());
+        assertEquals(orders.size(), notifiedTotalPrices.size());
+        for(int i = 0; i < orders.size(); i++) {
+            assertEquals(BigDecimal.valueOf(totalPrices[i], Product.PRICE_PRECISION), notifiedTotalPrices.get(i));
+        }
+    }
+
+    @Test
+    public void pricesWithMoreFractionDigitsMatchOrderPricing() {
+        // given
+        Product product = new Product("Fuel", new BigDecimal("5.999"));
+        Order order = new Order(Arrays.asList(product, new Product("Milk", new BigDecimal("3.49"))));
+        order.setDiscount(product, new BigDecimal("0.1"));
+        DiscountPlan plan = DiscountPlan.uniform(new BigDecimal("0.333"));
+
+        // when
+        long[] totalPrices = new BatchPricingEngine().computeTotalPrices(Collections.singletonList(order), plan);
+
+        // then
+        order.setGeneralDiscount(new BigDecimal("0.333"));
+        assertEquals(order.getTotalPrice(), BigDecimal.valueOf(totalPrices[0], Product.PRICE_PRECISION));
+    }
+
+    @Test
+    public void ordersWithMoreFractionDigitsAmongOthersMatchOrderPricing() {
+        // given
+        List<Order> orders = randomOrders(300, new Random(5));
+        for(int i = 0; i < orders.size(); i += 3) {
+            orders.set(i, new Order(Arrays.asList(new Product("Fuel", new BigDecimal("5.999")), new Product("Milk", new BigDecimal("3.49")))));
+        }
+
+        // when
+        long[] totalPrices = new BatchPricingEngine().computeTotalPrices(orders, order -> null);
+
+        // then
+        for(int i = 0; i < orders.size(); i++) {
+            assertEquals(orders.get(i).getTotalPrice(), BigDecimal.valueOf(totalPrices[i], Product.PRICE_PRECISION));
+        }
+    }
+
+    @Test
+    public void totalPricesUseTaxPoliciesOfOrders() {
+        // given
+        List<Order> orders = randomOrders(500, new Random(3));
+        Rate reduced = Rate.of(new BigDecimal("1.05"));
+        for(Order order: orders) order.setTaxPolicy(product -> product.getName().hashCode() % 2 == 0 ? reduced : Rate.of(TaxPolicy.DEFAULT_TAX_RATE));
+
+        // when
+        long[] totalPrices = new BatchPricingEngine().computeTotalPrices(orders, order -> null);
+
+        // then
+        for(int i = 0; i < orders.size(); i++) {
+            assertEquals(orders.get(i).getTotalPrice(), BigDecimal.valueOf(totalPrices[i], Product.PRICE_PRECISION));
+        }
+    }
+
+    @Test
+    public void incorrectDiscountInPlan() {
+        // given
+        List<Order> orders = randomOrders(1, new Random(1));
+
+        // when then
+        assertThrows(IllegalArgumentException.class, () -> new BatchPricingEngine().computeTotalPrices(orders, DiscountPlan.uniform(BigDecimal.ONE)));
+    }
+}
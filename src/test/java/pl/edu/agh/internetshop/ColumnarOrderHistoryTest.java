@@ -0,0 +1,194 @@
+package pl.edu.agh.internetshop;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.internetshop.search.CompositeSearchStrategy;
+import pl.edu.agh.internetshop.search.PriceRangeSearchStrategy;
+import pl.edu.agh.internetshop.search.PriceSearchStrategy;
+import pl.edu.agh.internetshop.search.ProductNameSearchStrategy;
+import pl.edu.agh.internetshop.search.RecipientSearchStrategy;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class ColumnarOrderHistoryTest {
+    private static final Address SENDER = new Address("Internet Shop", "1 Market Street", "30-059", "Krakow");
+
+    private Order getOrder(String recipientName, Product... products) {
+        Order order = new Order(Arrays.asList(products));
+        order.setShipment(new Shipment(SENDER, new Address(recipientName, "1234 Main Street", "01003", "New York")));
+        return order;
+    }
+
+    private Product product(String name, String price) {
+        return new Product(name, new BigDecimal(price));
+    }
+
+    private ColumnarOrderHistory getHistory(Order... orders) {
+        ColumnarOrderHistory history = new ColumnarOrderHistory();
+        for(Order order: orders) history.addOrder(order);
+        return history;
+    }
+
+    @Test
+    public void addNullOrder() {
+        // given
+        ColumnarOrderHistory history = new ColumnarOrderHistory();
+
+        // when then
+        assertThrows(NullPointerException.class, () -> history.addOrder(null));
+    }
+
+    @Test
+    public void rebuildOrders() {
+        // given
+        Product milk = product("Milk", "3.49");
+        Product bread = product("Bread", "4.20");
+        Order order = getOrder("Millie Petrozza", milk, bread, milk);
+        order.setDiscount(bread, new BigDecimal("0.25"));
+        order.setGeneralDiscount(new BigDecimal("0.1"));
+        PaymentMethod paymentMethod = mock(PaymentMethod.class);
+        order.setPaymentMethod(paymentMethod);
+        order.getShipment().setShipped(true);
+        Order withoutShipment = new Order(Arrays.asList(bread));
+
+        // when
+        List<Order> orders = getHistory(order, withoutShipment).getOrders();
+
+        // then
+        assertEquals(2, orders.size());
+        Order rebuilt = orders.get(0);
+        assertNotSame(order, rebuilt);
+        assertEquals(order.getId(), rebuilt.getId());
+        assertEquals(order.getCreationTime(), rebuilt.getCreationTime());
+        assertEquals(order.getProducts(), rebuilt.getProducts());
+        assertEquals(order.getTotalPrice(), rebuilt.getTotalPrice());
+        assertEquals(order.getDiscount(bread), rebuilt.getDiscount(bread));
+        assertEquals(order.getGeneralDiscount(), rebuilt.getGeneralDiscount());
+        assertEquals("Millie Petrozza", rebuilt.getRecipientName());
+        assertSame(SENDER, rebuilt.getShipment().getSenderAddress());
+        assertTrue(rebuilt.isSent());
+        assertSame(paymentMethod, rebuilt.getPaymentMethod());
+        assertNull(orders.get(1).getShipment());
+        assertEquals(withoutShipment.getId(), orders.get(1).getId());
+    }
+
+    @Test
+    public void searchByRecipient() {
+        // given
+        Order order1 = getOrder("Millie Petrozza", product("Milk", "3.49"));
+        Order order2 = getOrder("Nick Holmes", product("Milk", "3.49"));
+        Order order3 = getOrder("Millie Petrozza", product("Bread", "4.20"));
+        ColumnarOrderHistory history = getHistory(order1, order2, order3, new Order(Arrays.asList(product("Milk", "3.49"))));
+
+        // when
+        List<Order> orders = history.searchOrders(new RecipientSearchStrategy("Millie Petrozza"));
+
+        // then
+        assertEquals(2, orders.size());
+        assertEquals(order1.getId(), orders.get(0).getId());
+        assertEquals(order3.getId(), orders.get(1).getId());
+        assertTrue(history.searchOrders(new RecipientSearchStrategy("Tom Araya")).isEmpty());
+    }
+
+    @Test
+    public void searchByProductName() {
+        // given
+        Order order1 = getOrder("Millie Petrozza", product("Milk", "3.49"), product("Bread", "4.20"));
+        Order order2 = getOrder("Nick Holmes", product("Milk", "2.99"));
+        Order order3 = getOrder("Millie Petrozza", product("Bread", "4.20"));
+        ColumnarOrderHistory history = getHistory(order1, order2, order3);
+
+        // when
+        List<Order> orders = history.searchOrders(new ProductNameSearchStrategy("Milk"));
+
+        // then
+        assertEquals(2, orders.size());
+        assertEquals(order1.getId(), orders.get(0).getId());
+        assertEquals(order2.getId(), orders.get(1).getId());
+    }
+
+    @Test
+    public void searchByPrice() {
+        // given
+        Order order1 = getOrder("Millie Petrozza", product("Milk", "10.00"));
+        Order order2 = getOrder("Nick Holmes", product("Milk", "20.00"));
+        ColumnarOrderHistory history = getHistory(order1, order2);
+
+        // when
+        List<Order> orders = history.searchOrders(new PriceSearchStrategy(new BigDecimal("24.60")));
+
+        // then
+        assertEquals(1, orders.size());
+        assertEquals(order2.getId(), orders.get(0).getId());
+        assertTrue(history.searchOrders(new PriceSearchStrategy(new BigDecimal("24.6"))).isEmpty());
+        assertTrue(history.searchOrders(new PriceSearchStrategy(null)).isEmpty());
+    }
+
+    @Test
+    public void searchByPriceRangeAndRecipient() {
+        // given
+        Order order1 = getOrder("Millie Petrozza", product("Milk", "10.00"));
+        Order order2 = getOrder("Nick Holmes", product("Milk", "20.00"));
+        Order order3 = getOrder("Millie Petrozza", product("Milk", "30.00"));
+        ColumnarOrderHistory history = getHistory(order1, order2, order3);
+
+        // when
+        List<Order> orders = history.searchOrders(new CompositeSearchStrategy(
+                new PriceRangeSearchStrategy(new BigDecimal("12.301"), new BigDecimal("40")),
+                new RecipientSearchStrategy("Millie Petrozza")));
+
+        // then
+        assertEquals(1, orders.size());
+        assertEquals(order3.getId(), orders.get(0).getId());
+    }
+
+    @Test
+    public void searchWithStrategyWhichNeedsOrders() {
+        // given
+        Order order1 = getOrder("Millie Petrozza", product("Milk", "10.00"));
+        Order order2 = getOrder("Nick Holmes", product("Milk", "20.00"), product("Bread", "1.00"));
+        ColumnarOrderHistory history = getHistory(order1, order2);
+
+        // when
+        List<Order> orders = history.searchOrders(order -> order.getProducts().size() > 1);
+
+        // then
+        assertEquals(1, orders.size());
+        assertEquals(order2.getId(), orders.get(0).getId());
+    }
+
+    @Test
+    public void addManyOrders() {
+        // given
+        ColumnarOrderHistory history = new ColumnarOrderHistory();
+
+        // when
+        for(int i = 0; i < 1000; i++) history.addOrder(getOrder("Recipient " + (i % 10), product("Product " + (i % 7), "1.00"), product("Milk", "3.49")));
+
+        // then
+        assertEquals(1000, history.size());
+        assertEquals(100, history.searchOrders(new RecipientSearchStrategy("Recipient 3")).size());
+        assertEquals(1000, history.searchOrders(new ProductNameSearchStrategy("Milk")).size());
+    }
+
+    @Test
+    public void rebuiltOrderKeepsTaxPolicy() {
+        // given
+        Order order = getOrder("Millie Petrozza", product("Milk", "10.00"));
+        TaxPolicy reduced = TaxPolicy.uniform(new BigDecimal("1.05"));
+        order.setTaxPolicy(reduced);
+        ColumnarOrderHistory history = getHistory(order);
+
+        // when
+        List<Order> orders = history.searchOrders(new PriceSearchStrategy(new BigDecimal("10.50")));
+
+        // then
+        assertEquals(1, orders.size());
+        assertSame(reduced, orders.get(0).getTaxPolicy());
+        assertEquals(new BigDecimal("10.50"), orders.get(0).getTotalPrice());
+    }
+}
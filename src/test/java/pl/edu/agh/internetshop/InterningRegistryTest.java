@@ -0,0 +1,134 @@
+package pl.edu.agh.internetshop;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.Reference;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InterningRegistryTest {
+    @Test
+    public void equalProductsAreInternedToOneInstance() {
+        // given
+        Product product1 = new Product("Milk", new BigDecimal("3.49"));
+        Product product2 = new Product("Milk", new BigDecimal("3.49"));
+
+        // when then
+        assertSame(InterningRegistry.intern(product1), InterningRegistry.intern(product2));
+        assertNotSame(InterningRegistry.intern(product1), InterningRegistry.intern(new Product("Milk", new BigDecimal("3.50"))));
+    }
+
+    @Test
+    public void ordersShareEqualProducts() {
+        // given
+        Order order1 = new Order(Arrays.asList(new Product("Milk", new BigDecimal("3.49")), new Product("Bread", new BigDecimal("2.99"))));
+        Order order2 = new Order(Arrays.asList(new Product("Bread", new BigDecimal("2.99")), new Product("Milk", new BigDecimal("3.49"))));
+
+        // when then
+        assertSame(order1.getProducts().get(0), order2.getProducts().get(1));
+        assertSame(order1.getProducts().get(1), order2.getProducts().get(0));
+    }
+
+    @Test
+    public void addOrderInternsShipmentAddresses() {
+        // given
+        Order order1 = new Order(Arrays.asList(new Product("Milk", new BigDecimal("3.49"))));
+        Order order2 = new Order(Arrays.asList(new Product("Milk", new BigDecimal("3.49"))));
+        order1.setShipment(new Shipment(new Address("Internet Shop", "1 Market Street", "30-059", "Krakow"),
+                new Address("Jan Kowalski", "Main Street 1", "00-001", "Warsaw")));
+        order2.setShipment(new Shipment(new Address("Internet Shop", "1 Market Street", "30-059", "Krakow"),
+                new Address("Anna Nowak", "Main Street 2", "00-001", "Warsaw")));
+        OrderHistory orderHistory = new OrderHistory();
+
+        // when
+        orderHistory.addOrder(order1);
+        orderHistory.addOrder(order2);
+
+        // then
+        assertSame(order1.getShipment().getSenderAddress(), order2.getShipment().getSenderAddress());
+        assertNotSame(order1.getShipment().getRecipientAddress(), order2.getShipment().getRecipientAddress());
+    }
+
+    @Test
+    public void fullInternerReturnsNewValuesAsTheyAre() {
+        // given
+        InterningRegistry.Interner<String> interner = new InterningRegistry.Interner<>(1);
+        String first = new String("first");
+        interner.intern(first);
+        String second = new String("second");
+
+        // when then
+        assertSame(first, interner.intern(new String("first")));
+        assertSame(second, interner.intern(second));
+        assertEquals(1, interner.size());
+    }
+
+    // entries are cleared and enqueued by the test, as the garbage collector does once values are unused
+    private static InterningRegistry.Interner<String> getInterner(int maxSize, List<Reference<String>> entries) {
+        return new InterningRegistry.Interner<>(maxSize, (value, queue) -> {
+            InterningRegistry.Entry<String> entry = new InterningRegistry.Entry<>(value, queue);
+            entries.add(entry);
+            return entry;
+        });
+    }
+
+    private static void clear(List<Reference<String>> entries) {
+        for(Reference<String> entry: entries) {
+            entry.clear();
+            entry.enqueue();
+        }
+    }
+
+    @Test
+    public void unusedValuesAreEvicted() {
+        // given
+        List<Reference<String>> entries = new ArrayList<>();
+        InterningRegistry.Interner<String> interner = getInterner(100, entries);
+        for(int i = 0; i < 10; i++) interner.intern(new String("value " + i));
+
+        // when
+        clear(entries);
+
+        // then
+        assertEquals(0, interner.size());
+    }
+
+    @Test
+    public void valueEqualToEvictedOneIsInternedAgain() {
+        // given
+        List<Reference<String>> entries = new ArrayList<>();
+        InterningRegistry.Interner<String> interner = getInterner(100, entries);
+        interner.intern(new String("value"));
+        clear(entries);
+        String value = new String("value");
+
+        // when then
+        assertSame(value, interner.intern(value));
+        assertSame(value, interner.intern(new String("value")));
+        assertEquals(1, interner.size());
+    }
+
+    @Test
+    public void fullRegistryInternsAgainOnceValuesAreEvicted() {
+        // given
+        List<Reference<String>> entries = new ArrayList<>();
+        InterningRegistry.Interner<String> interner = getInterner(1, entries);
+        interner.intern(new String("first"));
+        String second = new String("second");
+        interner.intern(second);
+        String copy = new String("second");
+        String copyWhileFull = interner.intern(copy);
+
+        // when
+        clear(entries);
+        interner.intern(second);
+
+        // then
+        assertSame(copy, copyWhileFull);
+        assertSame(second, interner.intern(copy));
+    }
+}
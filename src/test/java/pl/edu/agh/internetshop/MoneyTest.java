@@ -0,0 +1,119 @@
+package pl.edu.agh.internetshop;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoneyTest {
+
+    @Test
+    public void testCreation() {
+        // given
+        BigDecimal amount = new BigDecimal("12.34");
+
+        // when
+        Money money = Money.of(amount);
+
+        // then
+        assertEquals(1234, money.getMinorUnits());
+        assertEquals(amount, money.toBigDecimal());
+    }
+
+    @Test
+    public void createFromAmountWithoutFraction() {
+        // when
+        Money money = Money.of(BigDecimal.valueOf(1000));
+
+        // then
+        assertEquals(100000, money.getMinorUnits());
+    }
+
+    @Test
+    public void createFromAmountWithTooManyFractionDigits() {
+        // when then
+        assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("0.001")));
+    }
+
+    @Test
+    public void addAndSubtract() {
+        // given
+        Money a = Money.of(new BigDecimal("10.05"));
+        Money b = Money.of(new BigDecimal("0.95"));
+
+        // when then
+        assertEquals(Money.ofMinorUnits(1100), a.add(b));
+        assertEquals(Money.ofMinorUnits(910), a.subtract(b));
+    }
+
+    @Test
+    public void multiplyWithRoundDown() {
+        // given
+        Money money = Money.of(new BigDecimal("0.01"));
+
+        // when then
+        assertEquals(Money.ofMinorUnits(1), money.multiply(BigDecimal.valueOf(1.23)));
+    }
+
+    @Test
+    public void multiplyWithRoundUp() {
+        // given
+        Money money = Money.of(new BigDecimal("0.03"));
+
+        // when then
+        assertEquals(Money.ofMinorUnits(4), money.multiply(BigDecimal.valueOf(1.23)));
+    }
+
+    @Test
+    public void multiplyHalfIsRoundedAwayFromZero() {
+        // given
+        Money money = Money.ofMinorUnits(5);
+        Money negative = Money.ofMinorUnits(-5);
+
+        // when then
+        assertEquals(Money.ofMinorUnits(3), money.multiply(new BigDecimal("0.5")));
+        assertEquals(Money.ofMinorUnits(-3), negative.multiply(new BigDecimal("0.5")));
+    }
+
+    @Test
+    public void multiplyByRateWhichDoesNotFitIntoLong() {
+        // given
+        Money money = Money.ofMinorUnits(300);
+        BigDecimal rate = new BigDecimal("0.3333333333333333333333333");
+
+        // when then
+        assertEquals(Money.ofMinorUnits(100), money.multiply(rate));
+    }
+
+    @Test
+    public void multiplyGivesSameResultAsBigDecimal() {
+        // given
+        Random random = new Random(42);
+
+        for(int i = 0; i < 10000; i++) {
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(10000000) - 5000000, Product.PRICE_PRECISION);
+            BigDecimal rate = BigDecimal.valueOf(random.nextInt(100000), random.nextInt(6));
+
+            // when
+            Money actual = Money.of(amount).multiply(rate);
+
+            // then
+            BigDecimal expected = amount.multiply(rate).setScale(Product.PRICE_PRECISION, Product.ROUND_STRATEGY);
+            assertEquals(expected, actual.toBigDecimal());
+        }
+    }
+
+    @Test
+    public void compareAmounts() {
+        // given
+        Money smaller = Money.ofMinorUnits(999);
+        Money bigger = Money.ofMinorUnits(1000);
+
+        // when then
+        assertTrue(smaller.compareTo(bigger) < 0);
+        assertTrue(bigger.compareTo(smaller) > 0);
+        assertEquals(0, bigger.compareTo(Money.of(BigDecimal.TEN)));
+    }
+}
@@ -0,0 +1,225 @@
+package pl.edu.agh.internetshop;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderCodecTest {
+    private final OrderEncoder encoder = new OrderEncoder();
+    private final OrderDecoder decoder = new OrderDecoder();
+    private final ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+    private Address address(String name, String city) {
+        return new Address(name, "1234 Main Street", "01003", city);
+    }
+
+    private Order getOrder() {
+        Product milk = new Product("Milk", new BigDecimal("3.49"));
+        Product tv = new Product("Telewizor \u0141\u00f3d\u017a", new BigDecimal("123456789012345678901.99"));
+        Order order = new Order(Arrays.asList(milk, tv, milk));
+        order.setDiscount(tv, new BigDecimal("0.125"));
+        order.setGeneralDiscount(new BigDecimal("0.05"));
+        Shipment shipment = new Shipment(address("Internet Shop", "Krakow"), address("Millie Petrozza", "Essen"));
+        shipment.setShipped(true);
+        order.setShipment(shipment);
+        return order;
+    }
+
+    @Test
+    public void orderRoundTrip() {
+        // given
+        Order order = getOrder();
+
+        // when
+        encoder.encode(order, buffer);
+        buffer.flip();
+        Order decoded = decoder.decodeOrder(buffer);
+
+        // then
+        assertFalse(buffer.hasRemaining());
+        assertEquals(order.getId(), decoded.getId());
+        assertEquals(order.getCreationTime(), decoded.getCreationTime());
+        assertEquals(order.getProducts(), decoded.getProducts());
+        assertEquals(order.getDiscount(order.getProducts().get(1)), decoded.getDiscount(decoded.getProducts().get(1)));
+        assertEquals(order.getGeneralDiscount(), decoded.getGeneralDiscount());
+        assertEquals(order.getTotalPrice(), decoded.getTotalPrice());
+        assertEquals("Millie Petrozza", decoded.getRecipientName());
+        assertEquals("Krakow", decoded.getShipment().getSenderAddress().getCity());
+        assertTrue(decoded.isSent());
+        assertFalse(decoded.isPaid());
+    }
+
+    @Test
+    public void orderWithoutShipmentRoundTrip() {
+        // given
+        Order order = new Order(Arrays.asList(new Product("Milk", new BigDecimal("3.49"))));
+
+        // when
+        encoder.encode(order, buffer);
+        buffer.flip();
+        Order decoded = decoder.decodeOrder(buffer);
+
+        // then
+        assertEquals(order.getId(), decoded.getId());
+        assertNull(decoded.getShipment());
+    }
+
+    @Test
+    public void productRoundTrip() {
+        // given
+        Product product = new Product("Milk", new BigDecimal("-1E+3"));
+
+        // when
+        encoder.encode(product, buffer);
+        buffer.flip();
+        Product decoded = decoder.decodeProduct(buffer);
+
+        // then
+        assertEquals(product, decoded);
+    }
+
+    @Test
+    public void addressWithNullsRoundTrip() {
+        // given
+        Address address = new Address(null, "1234 Main Street", null, "New York");
+
+        // when
+        encoder.encode(address, buffer);
+        buffer.flip();
+        Address decoded = decoder.decodeAddress(buffer);
+
+        // then
+        assertNull(decoded.getName());
+        assertEquals("1234 Main Street", decoded.getStreetAndHomeNr());
+        assertNull(decoded.getPostalCode());
+        assertEquals("New York", decoded.getCity());
+    }
+
+    @Test
+    public void shipmentRoundTrip() {
+        // given
+        Shipment shipment = new Shipment(address("Internet Shop", "Krakow"), null);
+
+        // when
+        encoder.encode(shipment, buffer);
+        buffer.flip();
+        Shipment decoded = decoder.decodeShipment(buffer);
+
+        // then
+        assertFalse(decoded.isShipped());
+        assertEquals("Internet Shop", decoded.getSenderAddress().getName());
+        assertNull(decoded.getRecipientAddress());
+    }
+
+    @Test
+    public void moneyTransferRoundTrip() {
+        // given
+        MoneyTransfer transfer = new MoneyTransfer(new BigInteger("27114020040000300201355387"), "example owner details", "example description", -5);
+        transfer.setCommitted(true);
+
+        // when
+        encoder.encode(transfer, buffer);
+        buffer.flip();
+        MoneyTransfer decoded = decoder.decodeMoneyTransfer(buffer);
+
+        // then
+        assertEquals(transfer.getAccountNumber(), decoded.getAccountNumber());
+        assertEquals(transfer.getOwnerDetails(), decoded.getOwnerDetails());
+        assertEquals(transfer.getDescription(), decoded.getDescription());
+        assertEquals(transfer.getAmount(), decoded.getAmount());
+        assertTrue(decoded.isCommitted());
+    }
+
+    @Test
+    public void repeatedNamesAreInterned() {
+        // given
+        Order order1 = getOrder();
+        Order order2 = getOrder();
+
+        // when
+        encoder.encode(order1, buffer);
+        int firstSize = buffer.position();
+        encoder.encode(order2, buffer);
+        int secondSize = buffer.position() - firstSize;
+        buffer.flip();
+        Order decoded1 = decoder.decodeOrder(buffer);
+        Order decoded2 = decoder.decodeOrder(buffer);
+
+        // then
+        assertTrue(secondSize < firstSize);
+        assertSame(decoded1.getProducts().get(0).getName(), decoded2.getProducts().get(0).getName());
+        assertSame(decoded1.getShipment().getSenderAddress().getCity(), decoded2.getShipment().getSenderAddress().getCity());
+        assertEquals(order2.getId(), decoded2.getId());
+    }
+
+    @Test
+    public void unsupportedVersion() {
+        // given
+        buffer.put((byte) 99).flip();
+
+        // when then
+        assertThrows(IllegalArgumentException.class, () -> decoder.decodeOrder(buffer));
+    }
+
+    @Test
+    public void bufferTooSmall() {
+        // given
+        ByteBuffer small = ByteBuffer.allocate(8);
+
+        // when then
+        assertThrows(BufferOverflowException.class, () -> encoder.encode(getOrder(), small));
+    }
+
+    @Test
+    public void varintRoundTrip() {
+        // given
+        long[] values = {0, 1, -1, 63, -64, 64, 300, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+
+        // when
+        for(long value: values) OrderEncoder.writeSignedVarint(buffer, value);
+        buffer.flip();
+
+        // then
+        for(long value: values) assertEquals(value, OrderDecoder.readSignedVarint(buffer));
+    }
+
+    @Test
+    public void orderKeepsTaxRates() {
+        // given
+        Product bread = new Product("Bread", new BigDecimal("10.00"));
+        Product book = new Product("Book", new BigDecimal("20.00"));
+        Order order = new Order(Arrays.asList(bread, book));
+        Rate reduced = Rate.of(new BigDecimal("1.05"));
+        order.setTaxPolicy(product -> product.getName().equals("Bread") ? reduced : Rate.of(TaxPolicy.DEFAULT_TAX_RATE));
+
+        // when
+        encoder.encode(order, buffer);
+        buffer.flip();
+        Order decoded = decoder.decodeOrder(buffer);
+
+        // then
+        assertEquals(new BigDecimal("35.10"), order.getTotalPrice());
+        assertEquals(order.getTotalPrice(), decoded.getTotalPrice());
+        assertEquals(reduced, decoded.getTaxPolicy().getTaxRate(bread));
+    }
+
+    @Test
+    public void orderWithDefaultTaxRatesKeepsDefaultPolicy() {
+        // given
+        Order order = getOrder();
+
+        // when
+        encoder.encode(order, buffer);
+        buffer.flip();
+        Order decoded = decoder.decodeOrder(buffer);
+
+        // then
+        assertSame(TaxPolicy.DEFAULT, decoded.getTaxPolicy());
+    }
+}
@@ -2,9 +2,30 @@ package pl.edu.agh.internetshop;
 
 import org.junit.jupiter.api.Test;
 import org.mockito.Matchers;
+import pl.edu.agh.internetshop.search.PriceRangeSearchStrategy;
+import pl.edu.agh.internetshop.search.PriceSearchStrategy;
+import pl.edu.agh.internetshop.search.ProductNamePrefixSearchStrategy;
+import pl.edu.agh.internetshop.search.ProductNameSearchStrategy;
+import pl.edu.agh.internetshop.search.ProductNameSubstringSearchStrategy;
+import pl.edu.agh.internetshop.search.PrunableSearchStrategy;
+import pl.edu.agh.internetshop.search.RecipientSearchStrategy;
 import pl.edu.agh.internetshop.search.SearchStrategy;
+import pl.edu.agh.internetshop.search.SegmentSummary;
 
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Matchers.any;
@@ -96,4 +117,582 @@ public class OrderHistoryTest {
         // then
         assertEquals(0, orders.size());
     }
+
+    private Order getOrderWithRecipient(String recipientName) {
+        Order order = mock(Order.class);
+        Address recipientAddress = mock(Address.class);
+        given(recipientAddress.getName()).willReturn(recipientName);
+        Shipment shipment = mock(Shipment.class);
+        given(shipment.getRecipientAddress()).willReturn(recipientAddress);
+        given(order.getShipment()).willReturn(shipment);
+        given(order.getRecipientName()).willReturn(recipientName);
+        return order;
+    }
+
+    @Test
+    public void searchByRecipientUsesIndex() {
+        // given
+        Order order1 = getOrderWithRecipient("Millie Petrozza");
+        Order order2 = getOrderWithRecipient("Nick Holmes");
+        Order order3 = getOrderWithRecipient("Millie Petrozza");
+        OrderHistory orderHistory = new OrderHistory();
+        orderHistory.addOrder(order1);
+        orderHistory.addOrder(order2);
+        orderHistory.addOrder(order3);
+        SearchStrategy strategy = spy(new RecipientSearchStrategy("Millie Petrozza"));
+
+        // when
+        List<Order> orders = orderHistory.searchOrders(strategy);
+
+        // then
+        assertEquals(2, orders.size());
+        assertSame(order1, orders.get(0));
+        assertSame(order3, orders.get(1));
+        verify(strategy, never()).filter(order2);
+    }
+
+    @Test
+    public void searchByRecipientChecksOrdersAddedWithoutShipment() {
+        // given
+        Order order1 = getOrderWithRecipient("Millie Petrozza");
+        Order order2 = mock(Order.class);
+        OrderHistory orderHistory = new OrderHistory();
+        orderHistory.addOrder(order1);
+        orderHistory.addOrder(order2);
+        given(order2.getRecipientName()).willReturn("Millie Petrozza");
+
+        // when
+        List<Order> orders = orderHistory.searchOrders(new RecipientSearchStrategy("Millie Petrozza"));
+
+        // then
+        assertEquals(2, orders.size());
+        assertSame(order1, orders.get(0));
+        assertSame(order2, orders.get(1));
+    }
+
+    @Test
+    public void searchByNullRecipientAndProductName() {
+        // given
+        OrderHistory orderHistory = new OrderHistory();
+        orderHistory.addOrder(getOrderWithRecipient("Millie Petrozza"));
+
+        // when
+        List<Order> byRecipient = orderHistory.searchOrders(new RecipientSearchStrategy(null));
+        List<Order> byProductName = orderHistory.searchOrders(new ProductNameSearchStrategy(null));
+
+        // then
+        assertTrue(byRecipient.isEmpty());
+        assertTrue(byProductName.isEmpty());
+    }
+
+    private Order getOrderWithProductPrice(String price) {
+        return new Order(Collections.singletonList(new Product("Endorama", new BigDecimal(price))));
+    }
+
+    @Test
+    public void searchByPriceRange() {
+        // given
+        Order order1 = getOrderWithProductPrice("30.00");
+        Order order2 = getOrderWithProductPrice("10.00");
+        Order order3 = getOrderWithProductPrice("20.00");
+        OrderHistory orderHistory = new OrderHistory();
+        orderHistory.addOrder(order1);
+        orderHistory.addOrder(order2);
+        orderHistory.addOrder(order3);
+
+        // when
+        List<Order> orders = orderHistory.searchOrders(new PriceRangeSearchStrategy(new BigDecimal("12.30"), new BigDecimal("36.90")));
+
+        // then
+        assertEquals(3, orders.size());
+        assertSame(order1, orders.get(0));
+        assertSame(order2, orders.get(1));
+        assertSame(order3, orders.get(2));
+    }
+
+    @Test
+    public void searchByPriceRangeAfterRepricing() {
+        // given
+        Order order1 = getOrderWithProductPrice("10.00");
+        Order order2 = getOrderWithProductPrice("10.00");
+        OrderHistory orderHistory = new OrderHistory();
+        orderHistory.addOrder(order1);
+        orderHistory.addOrder(order2);
+
+        // when
+        order1.setGeneralDiscount(new BigDecimal("0.5"));
+        List<Order> orders = orderHistory.searchOrders(new PriceRangeSearchStrategy(BigDecimal.ZERO, BigDecimal.TEN));
+
+        // then
+        assertEquals(1, orders.size());
+        assertSame(order1, orders.get(0));
+    }
+
+    @Test
+    public void searchByPriceRangeAfterRepricingOrderAddedTwice() {
+        // given
+        Order order = getOrderWithProductPrice("10.00");
+        OrderHistory orderHistory = new OrderHistory();
+        orderHistory.addOrder(order);
+        orderHistory.addOrder(getOrderWithProductPrice("10.00"));
+        orderHistory.addOrder(order);
+
+        // when
+        order.setGeneralDiscount(new BigDecimal("0.5"));
+        List<Order> orders = orderHistory.searchOrders(new PriceRangeSearchStrategy(BigDecimal.ZERO, BigDecimal.TEN));
+
+        // then
+        assertEquals(Arrays.asList(order, order), orders);
+    }
+
+    @Test
+    public void searchByPriceRangeAfterRepeatedRepricing() {
+        // given
+        Order order = getOrderWithProductPrice("10.00");
+        OrderHistory orderHistory = new OrderHistory();
+        orderHistory.addOrder(order);
+
+        // when
+        order.setGeneralDiscount(new BigDecimal("0.5"));
+        orderHistory.searchOrders(new PriceRangeSearchStrategy(BigDecimal.ZERO, BigDecimal.TEN));
+        order.setGeneralDiscount(new BigDecimal("0.2"));
+        order.setGeneralDiscount(new BigDecimal("0.1"));
+        List<Order> cheap = orderHistory.searchOrders(new PriceRangeSearchStrategy(BigDecimal.ZERO, BigDecimal.TEN));
+        List<Order> all = orderHistory.searchOrders(new PriceRangeSearchStrategy(BigDecimal.ZERO, new BigDecimal("100")));
+
+        // then
+        assertEquals(0, cheap.size());
+        assertEquals(Collections.singletonList(order), all);
+    }
+
+    @Test
+    public void searchByNullPrice() {
+        // given
+        OrderHistory orderHistory = new OrderHistory();
+        orderHistory.addOrder(getOrderWithProductPrice("10.00"));
+
+        // when
+        List<Order> orders = orderHistory.searchOrders(new PriceSearchStrategy(null));
+
+        // then
+        assertTrue(orders.isEmpty());
+    }
+
+    private Order getOrderWithProductName(String name) {
+        return new Order(Collections.singletonList(new Product(name, new BigDecimal("10.00"))));
+    }
+
+    @Test
+    public void searchByProductNamePrefixAndSubstring() {
+        // given
+        Order order1 = getOrderWithProductName("iPhone 11");
+        Order order2 = getOrderWithProductName("Phone charger");
+        Order order3 = getOrderWithProductName("iPhone 12 case");
+        OrderHistory orderHistory = new OrderHistory();
+        orderHistory.addOrder(order1);
+        orderHistory.addOrder(order2);
+        orderHistory.addOrder(order3);
+
+        // when
+        List<Order> byPrefix = orderHistory.searchOrders(new ProductNamePrefixSearchStrategy("iPhone"));
+        List<Order> bySubstring = orderHistory.searchOrders(new ProductNameSubstringSearchStrategy("hone 1"));
+
+        // then
+        assertEquals(2, byPrefix.size());
+        assertSame(order1, byPrefix.get(0));
+        assertSame(order3, byPrefix.get(1));
+        assertEquals(2, bySubstring.size());
+        assertSame(order1, bySubstring.get(0));
+        assertSame(order3, bySubstring.get(1));
+    }
+
+    @Test
+    public void ordersCannotBeModifiedThroughGetOrders() {
+        // given
+        OrderHistory orderHistory = new OrderHistory();
+        orderHistory.addOrder(mock(Order.class));
+
+        // when
+        List<Order> orders = orderHistory.getOrders();
+
+        // then
+        assertThrows(UnsupportedOperationException.class, () -> orders.add(mock(Order.class)));
+        assertThrows(UnsupportedOperationException.class, () -> orders.remove(0));
+    }
+
+    @Test
+    public void getOrdersReturnsSnapshot() {
+        // given
+        OrderHistory orderHistory = new OrderHistory();
+        orderHistory.addOrder(mock(Order.class));
+        List<Order> orders = orderHistory.getOrders();
+
+        // when
+        orderHistory.addOrder(mock(Order.class));
+
+        // then
+        assertEquals(1, orders.size());
+        assertEquals(2, orderHistory.getOrders().size());
+    }
+
+    @Test
+    public void addOrdersConcurrently() throws Exception {
+        // given
+        int threadCount = 8;
+        int ordersPerThread = 2000;
+        OrderHistory orderHistory = new OrderHistory(4);
+        List<List<Order>> addedOrders = new ArrayList<>();
+        for(int i = 0; i < threadCount; i++) {
+            List<Order> orders = new ArrayList<>();
+            for(int j = 0; j < ordersPerThread; j++) orders.add(getOrderWithRecipient("Recipient " + (j % 10)));
+            addedOrders.add(orders);
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for(List<Order> orders: addedOrders) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for(Order order: orders) orderHistory.addOrder(order);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        // when
+        start.countDown();
+        for(int i = 0; i < 50; i++) orderHistory.searchOrders(new RecipientSearchStrategy("Recipient 3"));
+        for(Thread thread: threads) thread.join();
+
+        // then
+        List<Order> orders = orderHistory.getOrders();
+        assertEquals(threadCount * ordersPerThread, orders.size());
+        for(List<Order> threadOrders: addedOrders) {
+            List<Order> ordered = new ArrayList<>(orders);
+            ordered.retainAll(threadOrders);
+            assertEquals(threadOrders, ordered);
+        }
+        assertEquals(threadCount * ordersPerThread / 10, orderHistory.searchOrders(new RecipientSearchStrategy("Recipient 3")).size());
+    }
+
+    @Test
+    public void searchInParallel() {
+        // given
+        OrderHistory orderHistory = new OrderHistory(2);
+        List<Order> expectedOrders = new ArrayList<>();
+        for(int i = 0; i < 20000; i++) {
+            Order order = getOrderWithProductPrice(String.valueOf(i % 7));
+            orderHistory.addOrder(order);
+            if(i % 7 == 3) expectedOrders.add(order);
+        }
+        SearchStrategy strategy = order -> order.getPrice().intValue() == 3;
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        // when
+        List<Order> orders = orderHistory.searchOrders(strategy, pool);
+
+        // then
+        assertEquals(expectedOrders, orders);
+        assertEquals(orderHistory.searchOrders(strategy), orders);
+        pool.shutdown();
+    }
+
+    @Test
+    public void searchInParallelByDefault() {
+        // given
+        OrderHistory orderHistory = new OrderHistory();
+        Order order1 = mock(Order.class);
+        Order order2 = mock(Order.class);
+        orderHistory.addOrder(order1);
+        orderHistory.addOrder(order2);
+        SearchStrategy strategy = mock(SearchStrategy.class);
+        given(strategy.filter(order2)).willReturn(true);
+        ForkJoinPool pool = new ForkJoinPool(2);
+
+        // when
+        orderHistory.setSearchPool(pool);
+        List<Order> orders = orderHistory.searchOrders(strategy);
+
+        // then
+        assertSame(pool, orderHistory.getSearchPool());
+        assertEquals(1, orders.size());
+        assertSame(order2, orders.get(0));
+        pool.shutdown();
+    }
+
+    @Test
+    public void streamOrdersStopsScanningEarly() {
+        // given
+        OrderHistory orderHistory = new OrderHistory(4);
+        List<Order> expectedOrders = new ArrayList<>();
+        for(int i = 0; i < 1000; i++) {
+            Order order = getOrderWithProductPrice(String.valueOf(i % 10));
+            orderHistory.addOrder(order);
+            if(i % 10 == 3 && expectedOrders.size() < 5) expectedOrders.add(order);
+        }
+        AtomicInteger checked = new AtomicInteger();
+        SearchStrategy strategy = order -> checked.incrementAndGet() > 0 && order.getPrice().intValue() == 3;
+
+        // when
+        List<Order> orders = orderHistory.streamOrders(strategy).limit(5).collect(Collectors.toList());
+
+        // then
+        assertEquals(expectedOrders, orders);
+        assertTrue(checked.get() < 100);
+    }
+
+    @Test
+    public void searchOrdersPageByPage() {
+        // given
+        OrderHistory orderHistory = new OrderHistory(4);
+        List<Order> expectedOrders = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            Order order = getOrderWithProductPrice(String.valueOf(i % 2));
+            orderHistory.addOrder(order);
+            if(i % 2 == 1) expectedOrders.add(order);
+        }
+        SearchStrategy strategy = order -> order.getPrice().intValue() == 1;
+
+        // when
+        List<Order> orders = new ArrayList<>();
+        int pages = 0;
+        String token = null;
+        do {
+            OrderPage page = orderHistory.searchOrders(strategy, 15, token);
+            orders.addAll(page.getOrders());
+            token = page.getContinuationToken();
+            pages++;
+        } while(token != null);
+
+        // then
+        assertEquals(expectedOrders, orders);
+        assertEquals(4, pages);
+    }
+
+    @Test
+    public void searchOrdersPageContinuesAfterNewOrders() {
+        // given
+        OrderHistory orderHistory = new OrderHistory(2);
+        Order order1 = getOrderWithProductName("iPhone 11");
+        Order order2 = getOrderWithProductName("iPhone 12");
+        Order order3 = getOrderWithProductName("iPhone 13");
+        orderHistory.addOrder(order1);
+        orderHistory.addOrder(order2);
+        SearchStrategy strategy = new ProductNamePrefixSearchStrategy("iPhone");
+        OrderPage first = orderHistory.searchOrders(strategy, 1, null);
+
+        // when
+        orderHistory.addOrder(order3);
+        OrderPage second = orderHistory.searchOrders(strategy, 5, first.getContinuationToken());
+
+        // then
+        assertEquals(Collections.singletonList(order1), first.getOrders());
+        assertTrue(first.hasMore());
+        assertEquals(Arrays.asList(order2, order3), second.getOrders());
+        assertFalse(second.hasMore());
+    }
+
+    @Test
+    public void pagesReturnOrderWhoseAddWasInProgress() throws Exception {
+        // given
+        OrderHistory orderHistory = new OrderHistory(2);
+        CountDownLatch appending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Order stalled = mock(Order.class);
+        given(stalled.getTotalPrice()).willAnswer(invocation -> {
+            appending.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return BigDecimal.TEN;
+        });
+        Thread adder = new Thread(() -> orderHistory.addOrder(stalled));
+        adder.start();
+        assertTrue(appending.await(5, TimeUnit.SECONDS));
+        Order order1 = getOrderWithProductName("Book");
+        Order order2 = getOrderWithProductName("Book");
+        orderHistory.addOrder(order1);
+        orderHistory.addOrder(order2);
+        SearchStrategy strategy = order -> true;
+
+        // when
+        OrderPage first = orderHistory.searchOrders(strategy, 1, null);
+        release.countDown();
+        adder.join(5000);
+        List<Order> orders = new ArrayList<>(first.getOrders());
+        String token = first.getContinuationToken();
+        while(token != null) {
+            OrderPage page = orderHistory.searchOrders(strategy, 1, token);
+            orders.addAll(page.getOrders());
+            token = page.getContinuationToken();
+        }
+
+        // then
+        assertEquals(Collections.singletonList(order1), first.getOrders());
+        assertEquals(3, orders.size());
+        assertTrue(orders.containsAll(Arrays.asList(stalled, order1, order2)));
+    }
+
+    @Test
+    public void searchOrdersWithIncorrectPage() {
+        // given
+        OrderHistory orderHistory = new OrderHistory();
+
+        // when then
+        assertThrows(IllegalArgumentException.class, () -> orderHistory.searchOrders(order -> true, 0, null));
+        assertThrows(IllegalArgumentException.class, () -> orderHistory.searchOrders(order -> true, 10, "not a token!"));
+        assertThrows(IllegalArgumentException.class, () -> new OrderHistory(1).searchOrders(order -> true, 10, "1.2"));
+    }
+
+    // recipients change with every segment of a single stripe
+    private static OrderHistory getHistoryWithRecipientPerSegment(int segments) {
+        OrderHistory orderHistory = new OrderHistory(1);
+        Product product = new Product("Book", new BigDecimal("10.00"));
+        for(int i = 0; i < segments * OrderHistory.SEGMENT_SIZE; i++) {
+            Order order = new Order(Collections.singletonList(product));
+            order.setShipment(new Shipment(new Address("Internet Shop", "1 Market Street", "30-059", "Krakow"),
+                    new Address("Recipient " + i / OrderHistory.SEGMENT_SIZE, "Main Street 1", "00-001", "Warsaw")));
+            orderHistory.addOrder(order);
+        }
+        return orderHistory;
+    }
+
+    // not indexed, so the history has to scan for it
+    private static PrunableSearchStrategy getUnindexedRecipientStrategy(String recipientName, AtomicInteger checked) {
+        return new PrunableSearchStrategy() {
+            @Override
+            public boolean mayMatch(SegmentSummary summary) {
+                return summary.mightContainRecipientName(recipientName);
+            }
+
+            @Override
+            public boolean filter(Order order) {
+                checked.incrementAndGet();
+                return order.getRecipientName().equals(recipientName);
+            }
+        };
+    }
+
+    private static Shipment getShipmentTo(String recipientName) {
+        return new Shipment(new Address("Internet Shop", "1 Market Street", "30-059", "Krakow"),
+                new Address(recipientName, "Main Street 1", "00-001", "Warsaw"));
+    }
+
+    @Test
+    public void searchByRecipientAfterShipmentChange() {
+        // given
+        Order order1 = getOrderWithProductName("Book");
+        Order order2 = getOrderWithProductName("Book");
+        order1.setShipment(getShipmentTo("Alice"));
+        order2.setShipment(getShipmentTo("Alice"));
+        OrderHistory orderHistory = new OrderHistory();
+        orderHistory.addOrder(order1);
+        orderHistory.addOrder(order2);
+
+        // when
+        order1.setShipment(getShipmentTo("Bob"));
+
+        // then
+        assertEquals(Collections.singletonList(order1), orderHistory.searchOrders(new RecipientSearchStrategy("Bob")));
+        assertEquals(Collections.singletonList(order2), orderHistory.searchOrders(new RecipientSearchStrategy("Alice")));
+    }
+
+    @Test
+    public void scanFindsRecipientAfterShipmentChange() {
+        // given
+        OrderHistory orderHistory = getHistoryWithRecipientPerSegment(2);
+        Order order = orderHistory.getOrders().get(0);
+        AtomicInteger checked = new AtomicInteger();
+
+        // when
+        order.setShipment(getShipmentTo("Recipient 7"));
+        List<Order> orders = orderHistory.searchOrders(getUnindexedRecipientStrategy("Recipient 7", checked));
+
+        // then
+        assertEquals(Collections.singletonList(order), orders);
+    }
+
+    @Test
+    public void scanSkipsSegmentOnceOrderWithoutShipmentGetsOne() {
+        // given
+        Order order = getOrderWithProductName("Book");
+        OrderHistory orderHistory = new OrderHistory(1);
+        orderHistory.addOrder(order);
+        for(int i = 1; i < 2 * OrderHistory.SEGMENT_SIZE; i++) {
+            Order other = getOrderWithProductName("Book");
+            other.setShipment(getShipmentTo("Recipient " + i / OrderHistory.SEGMENT_SIZE));
+            orderHistory.addOrder(other);
+        }
+        AtomicInteger checked = new AtomicInteger();
+
+        // when
+        order.setShipment(getShipmentTo("Recipient 0"));
+        List<Order> orders = orderHistory.searchOrders(getUnindexedRecipientStrategy("Recipient 1", checked));
+
+        // then
+        assertEquals(OrderHistory.SEGMENT_SIZE, orders.size());
+        assertEquals(OrderHistory.SEGMENT_SIZE, checked.get());
+    }
+
+    @Test
+    public void scanSkipsSegmentsWithoutRecipient() {
+        // given
+        OrderHistory orderHistory = getHistoryWithRecipientPerSegment(3);
+        AtomicInteger checked = new AtomicInteger();
+
+        // when
+        List<Order> orders = orderHistory.searchOrders(getUnindexedRecipientStrategy("Recipient 1", checked));
+
+        // then
+        assertEquals(OrderHistory.SEGMENT_SIZE, orders.size());
+        assertEquals(OrderHistory.SEGMENT_SIZE, checked.get());
+        for(Order order: orders) assertEquals("Recipient 1", order.getRecipientName());
+    }
+
+    @Test
+    public void parallelScanSkipsSegmentsWithoutRecipient() {
+        // given
+        OrderHistory orderHistory = getHistoryWithRecipientPerSegment(3);
+        AtomicInteger checked = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(2);
+
+        // when
+        List<Order> orders = orderHistory.searchOrders(getUnindexedRecipientStrategy("Recipient 2", checked), pool);
+
+        // then
+        assertEquals(OrderHistory.SEGMENT_SIZE, orders.size());
+        assertEquals(OrderHistory.SEGMENT_SIZE, checked.get());
+        pool.shutdown();
+    }
+
+    @Test
+    public void searchForMissingRecipientChecksNoOrders() {
+        // given
+        OrderHistory orderHistory = getHistoryWithRecipientPerSegment(2);
+        AtomicInteger checked = new AtomicInteger();
+
+        // when
+        List<Order> orders = orderHistory.searchOrders(getUnindexedRecipientStrategy("Nick Holmes", checked));
+
+        // then
+        assertTrue(orders.isEmpty());
+        assertEquals(0, checked.get());
+    }
+
+    @Test
+    public void pagesSkipSegmentsWithoutRecipient() {
+        // given
+        OrderHistory orderHistory = getHistoryWithRecipientPerSegment(3);
+        PrunableSearchStrategy strategy = getUnindexedRecipientStrategy("Recipient 2", new AtomicInteger());
+
+        // when
+        OrderPage first = orderHistory.searchOrders(strategy, 1000, null);
+        OrderPage second = orderHistory.searchOrders(strategy, 1000, first.getContinuationToken());
+
+        // then
+        assertEquals(1000, first.getOrders().size());
+        assertEquals(OrderHistory.SEGMENT_SIZE - 1000, second.getOrders().size());
+        assertFalse(second.hasMore());
+    }
 }
@@ -3,15 +3,22 @@ package pl.edu.agh.internetshop;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static pl.edu.agh.internetshop.util.CustomAssertions.assertBigDecimalCompareValue;
 
 public class OrderTest {
@@ -21,6 +28,18 @@ public class OrderTest {
 		return new Order(Collections.singletonList(product));
 	}
 
+	@Test
+	public void orderIsStampedWithCreationTime() {
+		// given
+		Instant now = Instant.parse("2020-04-01T12:30:00Z");
+
+		// when
+		Order order = new Order(Collections.singletonList(mock(Product.class)), Clock.fixed(now, ZoneOffset.UTC));
+
+		// then
+		assertEquals(now, order.getCreationTime());
+	}
+
 	@Test
 	public void createOfferWithNullList() {
 		// when then
@@ -55,6 +74,16 @@ public class OrderTest {
 		assertSame(expectedProduct, actualProduct.get(0));
 	}
 
+	@Test
+	public void productsCannotBeModifiedThroughOrder() {
+		// given
+		Order order = new Order(Collections.singletonList(mock(Product.class)));
+
+		// when then
+		assertThrows(UnsupportedOperationException.class, () -> order.getProducts().add(mock(Product.class)));
+		assertThrows(UnsupportedOperationException.class, () -> order.getProducts().clear());
+	}
+
 	@Test
 	public void getMultipleProductsThroughOrder() {
 		// given
@@ -408,4 +437,248 @@ public class OrderTest {
 		// then
 		assertBigDecimalCompareValue(BigDecimal.valueOf(1900), actualPrice);
 	}
+
+	@Test
+	public void totalPriceIsComputedOnce() {
+		// given
+		List<Product> products = getProductsWithMockedPrices(BigDecimal.valueOf(1000));
+		Order order = new Order(products);
+
+		// when
+		BigDecimal firstPrice = order.getTotalPrice();
+		BigDecimal secondPrice = order.getTotalPrice();
+
+		// then
+		assertSame(firstPrice, secondPrice);
+		verify(products.get(0), times(1)).getPrice();
+	}
+
+	@Test
+	public void totalPriceChangesWithGeneralDiscount() {
+		// given
+		List<Product> products = getProductsWithMockedPrices(BigDecimal.valueOf(1000));
+		Order order = new Order(products);
+		assertBigDecimalCompareValue(BigDecimal.valueOf(1230), order.getTotalPrice());
+
+		// when
+		order.setGeneralDiscount(BigDecimal.valueOf(0.5));
+
+		// then
+		assertBigDecimalCompareValue(BigDecimal.valueOf(500), order.getPriceWithDiscounts());
+		assertBigDecimalCompareValue(BigDecimal.valueOf(615), order.getTotalPrice());
+	}
+
+	@Test
+	public void totalPriceChangesWithProductDiscount() {
+		// given
+		List<Product> products = getProductsWithMockedPrices(BigDecimal.valueOf(1000), BigDecimal.valueOf(2000));
+		Order order = new Order(products);
+		assertBigDecimalCompareValue(BigDecimal.valueOf(3690), order.getTotalPrice());
+
+		// when
+		order.setDiscount(products.get(1), BigDecimal.valueOf(0.5));
+
+		// then
+		assertBigDecimalCompareValue(BigDecimal.valueOf(2460), order.getTotalPrice());
+		assertBigDecimalCompareValue(BigDecimal.valueOf(3690), order.getPriceWithTaxes());
+	}
+
+	@Test
+	public void moneyPricesMatchBigDecimalPrices() {
+		// given
+		Random random = new Random(7);
+
+		for(int i = 0; i < 1000; i++) {
+			BigDecimal[] prices = new BigDecimal[1 + random.nextInt(5)];
+			for(int j = 0; j < prices.length; j++) prices[j] = BigDecimal.valueOf(random.nextInt(1000000), 2);
+			List<Product> products = getProductsWithMockedPrices(prices);
+			Order order = new Order(products);
+			for(Product product: products) {
+				if(random.nextBoolean()) order.setDiscount(product, BigDecimal.valueOf(1 + random.nextInt(99), 2));
+			}
+			if(random.nextBoolean()) order.setGeneralDiscount(BigDecimal.valueOf(1 + random.nextInt(999), 3));
+
+			// when then
+			assertBigDecimalCompareValue(order.getPrice(), order.getPriceAsMoney().toBigDecimal());
+			assertEquals(order.getPriceWithDiscounts(), order.getPriceWithDiscountsAsMoney().toBigDecimal());
+			assertEquals(order.getPriceWithTaxes(), order.getPriceWithTaxesAsMoney().toBigDecimal());
+			assertEquals(order.getTotalPrice(), order.getTotalPriceAsMoney().toBigDecimal());
+		}
+	}
+
+	@Test
+	public void productsAreTaxedWithTheirTaxRates() {
+		// given
+		Product book = new Product("Book", new BigDecimal("10.00"));
+		Product bread = new Product("Bread", new BigDecimal("3.33"));
+		Order order = new Order(Arrays.asList(book, bread));
+		TaxPolicy reducedForBread = product -> product.getName().equals("Bread")
+				? Rate.of(new BigDecimal("1.05")) : Rate.of(new BigDecimal("1.23"));
+
+		// when
+		order.setTaxPolicy(reducedForBread);
+
+		// then
+		assertEquals(new BigDecimal("15.80"), order.getPriceWithTaxes()); // 12.30 + 3.50
+		assertEquals(new BigDecimal("15.80"), order.getTotalPrice());
+	}
+
+	@Test
+	public void taxPolicyChangeRepricesOrder() {
+		// given
+		Order order = new Order(Collections.singletonList(new Product("Book", new BigDecimal("10.00"))));
+		order.setGeneralDiscount(new BigDecimal("0.5"));
+		assertEquals(new BigDecimal("6.15"), order.getTotalPrice());
+		List<Order> repriced = new ArrayList<>();
+		order.addPriceChangeListener(repriced::add);
+
+		// when
+		order.setTaxPolicy(TaxPolicy.uniform(new BigDecimal("1.08")));
+
+		// then
+		assertEquals(new BigDecimal("10.80"), order.getPriceWithTaxes());
+		assertEquals(new BigDecimal("5.40"), order.getTotalPrice());
+		assertEquals(Collections.singletonList(order), repriced);
+	}
+
+	@Test
+	public void priceChangeListenerAddedTwiceIsNotifiedOnce() {
+		// given
+		Order order = new Order(Collections.singletonList(new Product("Book", new BigDecimal("10.00"))));
+		List<Order> repriced = new ArrayList<>();
+		Consumer<Order> listener = repriced::add;
+		order.addPriceChangeListener(listener);
+		order.addPriceChangeListener(listener);
+
+		// when
+		order.setGeneralDiscount(new BigDecimal("0.5"));
+
+		// then
+		assertEquals(Collections.singletonList(order), repriced);
+	}
+
+	@Test
+	public void shipmentChangeNotifiesListeners() {
+		// given
+		Order order = new Order(Collections.singletonList(new Product("Book", new BigDecimal("10.00"))));
+		List<Order> changed = new ArrayList<>();
+		order.addShipmentChangeListener(changed::add);
+
+		// when
+		order.setShipment(mock(Shipment.class));
+
+		// then
+		assertEquals(Collections.singletonList(order), changed);
+	}
+
+	@Test
+	public void removedPriceChangeListenerIsNotNotified() {
+		// given
+		Order order = new Order(Collections.singletonList(new Product("Book", new BigDecimal("10.00"))));
+		List<Order> repriced = new ArrayList<>();
+		Consumer<Order> listener = repriced::add;
+		order.addPriceChangeListener(listener);
+		order.removePriceChangeListener(listener);
+
+		// when
+		order.setGeneralDiscount(new BigDecimal("0.5"));
+
+		// then
+		assertTrue(repriced.isEmpty());
+	}
+
+	@Test
+	public void moneyPricesMatchBigDecimalPricesWithMixedTaxRates() {
+		// given
+		Random random = new Random(11);
+		Rate[] rates = {Rate.of(new BigDecimal("1.23")), Rate.of(new BigDecimal("1.08")), Rate.of(new BigDecimal("1.05"))};
+
+		for(int i = 0; i < 1000; i++) {
+			List<Product> products = new ArrayList<>();
+			for(int j = 1 + random.nextInt(5); j > 0; j--) {
+				products.add(new Product("Product " + random.nextInt(3), BigDecimal.valueOf(random.nextInt(1000000), 2)));
+			}
+			Order order = new Order(products);
+			order.setTaxPolicy(product -> rates[product.getName().charAt(8) - '0']);
+			if(random.nextBoolean()) order.setDiscount(products.get(0), BigDecimal.valueOf(1 + random.nextInt(99), 2));
+			if(random.nextBoolean()) order.setGeneralDiscount(BigDecimal.valueOf(1 + random.nextInt(999), 3));
+
+			// when
+			BigDecimal totalPrice = order.computeTotalPrice(order.getGeneralDiscount());
+
+			// then
+			assertEquals(totalPrice, order.getTotalPriceAsMoney().toBigDecimal());
+			assertEquals(totalPrice, order.getTotalPrice());
+		}
+	}
+
+	@Test
+	public void setNullTaxPolicy() {
+		// given
+		Order order = getOrderWithMockedProduct();
+
+		// when then
+		assertThrows(NullPointerException.class, () -> order.setTaxPolicy(null));
+	}
+
+	@Test
+	public void equalProductsAreAggregatedIntoLineItems() {
+		// given
+		Product book = new Product("Book", new BigDecimal("10.00"));
+		Product pen = new Product("Pen", new BigDecimal("1.50"));
+
+		// when
+		Order order = new Order(Arrays.asList(book, pen, new Product("Book", new BigDecimal("10.00")), book));
+
+		// then
+		assertEquals(4, order.getProducts().size());
+		assertEquals(2, order.getLineItems().size());
+		assertEquals(book, order.getLineItems().get(0).getProduct());
+		assertEquals(3, order.getLineItems().get(0).getQuantity());
+		assertEquals(1, order.getLineItems().get(1).getQuantity());
+		assertEquals(new BigDecimal("31.50"), order.getPrice());
+	}
+
+	@Test
+	public void productDiscountAppliesToWholeLineItem() {
+		// given
+		Product book = new Product("Book", new BigDecimal("9.99"));
+		Order order = new Order(Arrays.asList(book, book, book));
+
+		// when
+		order.setDiscount(book, new BigDecimal("0.5"));
+
+		// then
+		assertEquals(new BigDecimal("15.00"), order.getPriceWithDiscounts()); // 3 * 5.00
+		assertEquals(new BigDecimal("18.45"), order.getTotalPrice());
+		assertEquals(order.getTotalPrice(), order.getTotalPriceAsMoney().toBigDecimal());
+	}
+
+	@Test
+	public void largeCartIsPricedPerDistinctProduct() {
+		// given
+		List<Product> distinct = getProductsWithMockedPrices(new BigDecimal("0.99"), new BigDecimal("12.34"));
+		List<Product> products = new ArrayList<>();
+		for(int i = 0; i < 10000; i++) products.add(distinct.get(i % 2));
+		Order order = new Order(products);
+
+		// when
+		BigDecimal totalPrice = order.getTotalPrice();
+
+		// then
+		assertEquals(new BigDecimal("81979.50"), totalPrice); // 5000 * 0.99 + 5000 * 12.34 = 66650.00, with taxes
+		verify(distinct.get(0), times(1)).getPrice();
+		verify(distinct.get(1), times(1)).getPrice();
+	}
+
+	@Test
+	public void discountOfProductNotInOrder() {
+		// given
+		Order order = new Order(Collections.singletonList(new Product("Book", new BigDecimal("10.00"))));
+		Product pen = new Product("Pen", new BigDecimal("1.50"));
+
+		// when then
+		assertNull(order.getDiscount(pen));
+		assertThrows(IllegalArgumentException.class, () -> order.setDiscount(pen, new BigDecimal("0.5")));
+	}
 }
@@ -0,0 +1,194 @@
+package pl.edu.agh.internetshop;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.internetshop.metrics.Metrics;
+import pl.edu.agh.internetshop.search.CreationTimeSearchStrategy;
+import pl.edu.agh.internetshop.search.ProductNameSearchStrategy;
+import pl.edu.agh.internetshop.search.SearchStrategy;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartitionedOrderHistoryTest {
+    private static final Instant DAY = Instant.parse("2020-04-01T00:00:00Z");
+
+    private Order getOrderCreatedAt(Instant creationTime, String productName) {
+        return new Order(Collections.singletonList(new Product(productName, new BigDecimal("10.00"))), Clock.fixed(creationTime, ZoneOffset.UTC));
+    }
+
+    private Instant day(int day, int hour) {
+        return DAY.plus(Duration.ofDays(day)).plus(Duration.ofHours(hour));
+    }
+
+    @Test
+    public void addNullOrder() {
+        // given
+        PartitionedOrderHistory history = new PartitionedOrderHistory();
+
+        // when then
+        assertThrows(NullPointerException.class, () -> history.addOrder(null));
+    }
+
+    @Test
+    public void ordersArePartitionedByDay() {
+        // given
+        PartitionedOrderHistory history = new PartitionedOrderHistory();
+        Order order1 = getOrderCreatedAt(day(2, 10), "Milk");
+        Order order2 = getOrderCreatedAt(day(0, 10), "Milk");
+        Order order3 = getOrderCreatedAt(day(2, 1), "Bread");
+
+        // when
+        history.addOrder(order1);
+        history.addOrder(order2);
+        history.addOrder(order3);
+
+        // then
+        assertEquals(2, history.getPartitionCount());
+        assertEquals(Arrays.asList(order2, order1, order3), history.getOrders());
+    }
+
+    @Test
+    public void searchByTimeRangeSkipsOtherPartitions() {
+        // given
+        PartitionedOrderHistory history = new PartitionedOrderHistory();
+        Order order1 = getOrderCreatedAt(day(0, 10), "Milk");
+        Order order2 = getOrderCreatedAt(day(1, 10), "Milk");
+        Order order3 = getOrderCreatedAt(day(2, 10), "Milk");
+        Order order4 = getOrderCreatedAt(day(2, 20), "Milk");
+        for(Order order: Arrays.asList(order1, order2, order3, order4)) history.addOrder(order);
+        AtomicInteger checked = new AtomicInteger();
+        SearchStrategy strategy = order -> checked.incrementAndGet() > 0;
+
+        // when
+        List<Order> orders = history.searchOrders(strategy, day(1, 0), day(2, 12));
+
+        // then
+        // day 0 is skipped, day 2 is checked against the time range first
+        assertEquals(Arrays.asList(order2, order3), orders);
+        assertEquals(2, checked.get());
+    }
+
+    @Test
+    public void searchWithCreationTimeStrategy() {
+        // given
+        PartitionedOrderHistory history = new PartitionedOrderHistory(Duration.ofHours(1));
+        Order order1 = getOrderCreatedAt(day(0, 10), "Milk");
+        Order order2 = getOrderCreatedAt(day(0, 11), "Milk");
+        history.addOrder(order1);
+        history.addOrder(order2);
+
+        // when
+        List<Order> orders = history.searchOrders(new CreationTimeSearchStrategy(day(0, 11), day(0, 12)));
+
+        // then
+        assertEquals(Collections.singletonList(order2), orders);
+    }
+
+    @Test
+    public void searchWithInstrumentedCreationTimeStrategySkipsOtherPartitions() {
+        // given
+        PartitionedOrderHistory history = new PartitionedOrderHistory();
+        Order order1 = getOrderCreatedAt(day(0, 10), "Milk");
+        Order order2 = getOrderCreatedAt(day(1, 10), "Milk");
+        Order order3 = getOrderCreatedAt(day(2, 10), "Milk");
+        for(Order order: Arrays.asList(order1, order2, order3)) history.addOrder(order);
+        Metrics metrics = new Metrics();
+        SearchStrategy strategy = metrics.instrumentSearch("day", new CreationTimeSearchStrategy(day(1, 0), day(2, 0)));
+
+        // when
+        List<Order> orders = history.searchOrders(strategy);
+
+        // then
+        assertEquals(Collections.singletonList(order2), orders);
+        assertEquals(1, metrics.snapshot().getCounter("search.day.evaluated"));
+    }
+
+    @Test
+    public void searchWithoutTimeRange() {
+        // given
+        PartitionedOrderHistory history = new PartitionedOrderHistory();
+        Order order1 = getOrderCreatedAt(day(0, 10), "Milk");
+        Order order2 = getOrderCreatedAt(day(1, 10), "Bread");
+        Order order3 = getOrderCreatedAt(day(2, 10), "Milk");
+        for(Order order: Arrays.asList(order1, order2, order3)) history.addOrder(order);
+
+        // when
+        List<Order> orders = history.searchOrders(new ProductNameSearchStrategy("Milk"));
+
+        // then
+        assertEquals(Arrays.asList(order1, order3), orders);
+    }
+
+    @Test
+    public void compactOldPartitions() {
+        // given
+        PartitionedOrderHistory history = new PartitionedOrderHistory();
+        Order order1 = getOrderCreatedAt(day(0, 10), "Milk");
+        Order order2 = getOrderCreatedAt(day(1, 10), "Bread");
+        Order order3 = getOrderCreatedAt(day(2, 10), "Milk");
+        for(Order order: Arrays.asList(order1, order2, order3)) history.addOrder(order);
+
+        // when
+        int compacted = history.compact(day(2, 5));
+
+        // then
+        assertEquals(2, compacted);
+        assertTrue(history.isCompacted(day(0, 0)));
+        assertTrue(history.isCompacted(day(1, 0)));
+        assertFalse(history.isCompacted(day(2, 0)));
+        assertEquals(0, history.compact(day(2, 5)));
+        List<Order> orders = history.searchOrders(new ProductNameSearchStrategy("Milk"));
+        assertEquals(Arrays.asList(order1.getId(), order3.getId()), orders.stream().map(Order::getId).collect(Collectors.toList()));
+        assertNotSame(order1, orders.get(0));
+        assertSame(order3, orders.get(1));
+        assertEquals(order1.getCreationTime(), orders.get(0).getCreationTime());
+    }
+
+    @Test
+    public void addToCompactedPartition() {
+        // given
+        PartitionedOrderHistory history = new PartitionedOrderHistory();
+        history.addOrder(getOrderCreatedAt(day(0, 10), "Milk"));
+        history.compact(day(1, 0));
+        Order late = getOrderCreatedAt(day(0, 12), "Bread");
+
+        // when
+        history.addOrder(late);
+
+        // then
+        List<Order> orders = history.searchOrders(new CreationTimeSearchStrategy(day(0, 11), day(1, 0)));
+        assertEquals(1, orders.size());
+        assertEquals(late.getId(), orders.get(0).getId());
+    }
+
+    @Test
+    public void incorrectPartitionDuration() {
+        // when then
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedOrderHistory(Duration.ZERO));
+    }
+
+    @Test
+    public void compactionKeepsTotalPrices() {
+        // given
+        PartitionedOrderHistory history = new PartitionedOrderHistory();
+        Order order = getOrderCreatedAt(day(0, 10), "Milk");
+        order.setTaxPolicy(TaxPolicy.uniform(new BigDecimal("1.05")));
+        history.addOrder(order);
+
+        // when
+        history.compact(day(1, 0));
+
+        // then
+        assertEquals(new BigDecimal("10.50"), history.getOrders().get(0).getTotalPrice());
+    }
+}
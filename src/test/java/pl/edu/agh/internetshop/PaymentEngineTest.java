@@ -0,0 +1,238 @@
+package pl.edu.agh.internetshop;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static pl.edu.agh.internetshop.util.PaymentFixtures.TOTAL_PRICE_MINOR_UNITS;
+import static pl.edu.agh.internetshop.util.PaymentFixtures.getOrder;
+
+public class PaymentEngineTest {
+    // pays the 12.30 total price of an order from getOrder
+    private static MoneyTransfer getTransfer(int number) {
+        return new MoneyTransfer(BigInteger.valueOf(1234), "Jan Kowalski", "Order " + number, TOTAL_PRICE_MINOR_UNITS);
+    }
+
+    @Test
+    public void payCommitsTransfer() throws Exception {
+        // given
+        Order order = getOrder(transfer -> true);
+        MoneyTransfer transfer = getTransfer(12);
+
+        // when
+        boolean paid;
+        try(PaymentEngine engine = new PaymentEngine()) {
+            paid = engine.pay(order, transfer).get(5, TimeUnit.SECONDS);
+        }
+
+        // then
+        assertTrue(paid);
+        assertTrue(order.isPaid());
+        assertTrue(transfer.isCommitted());
+    }
+
+    @Test
+    public void committedTransferIsNotCommittedAgain() throws Exception {
+        // given
+        AtomicInteger commits = new AtomicInteger();
+        Order order = getOrder(transfer -> commits.incrementAndGet() > 0);
+        MoneyTransfer transfer = getTransfer(12);
+
+        // when
+        boolean first;
+        boolean second;
+        try(PaymentEngine engine = new PaymentEngine()) {
+            first = engine.pay(order, transfer).get(5, TimeUnit.SECONDS);
+            second = engine.pay(order, transfer).get(5, TimeUnit.SECONDS);
+        }
+
+        // then
+        assertTrue(first);
+        assertFalse(second);
+        assertEquals(1, commits.get());
+        assertTrue(transfer.isCommitted());
+    }
+
+    @Test
+    public void transferInFlightIsNotCommittedAgain() throws Exception {
+        // given
+        AtomicInteger commits = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Order order = getOrder(transfer -> {
+            commits.incrementAndGet();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        });
+        MoneyTransfer transfer = getTransfer(12);
+
+        // when
+        boolean first;
+        boolean second;
+        try(PaymentEngine engine = new PaymentEngine()) {
+            CompletableFuture<Boolean> firstResult = engine.pay(order, transfer);
+            second = engine.pay(order, transfer).get(5, TimeUnit.SECONDS);
+            release.countDown();
+            first = firstResult.get(5, TimeUnit.SECONDS);
+        }
+
+        // then
+        assertTrue(first);
+        assertFalse(second);
+        assertEquals(1, commits.get());
+    }
+
+    @Test
+    public void interruptedCloseKeepsInterruptStatus() throws Exception {
+        // given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Order order = getOrder(transfer -> {
+            started.countDown();
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+        PaymentEngine engine = new PaymentEngine();
+        CompletableFuture<Boolean> paid = engine.pay(order, getTransfer(12));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // when
+        Thread.currentThread().interrupt();
+        engine.close();
+
+        // then
+        assertTrue(Thread.interrupted());
+        assertFalse(paid.isDone());
+        release.countDown();
+        assertTrue(paid.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void payWithoutPaymentMethod() throws Exception {
+        // given
+        Order order = getOrder(null);
+
+        // when then
+        try(PaymentEngine engine = new PaymentEngine()) {
+            assertThrows(NullPointerException.class, () -> engine.pay(order, getTransfer(12)));
+        }
+    }
+
+    @Test
+    public void settleSetsResultOfEveryTransfer() throws Exception {
+        // given
+        PaymentMethod evenOrdersOnly = transfer -> Integer.parseInt(transfer.getDescription().substring(6)) % 2 == 0;
+        List<Order> orders = new ArrayList<>();
+        List<MoneyTransfer> transfers = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            orders.add(getOrder(evenOrdersOnly));
+            transfers.add(getTransfer(i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // when
+        List<CompletableFuture<Boolean>> results;
+        try(PaymentEngine engine = new PaymentEngine(executor)) {
+            results = engine.settle(orders, transfers);
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        for(int i = 0; i < 100; i++) {
+            boolean even = i % 2 == 0;
+            assertEquals(even, results.get(i).join());
+            assertEquals(even, orders.get(i).isPaid());
+            assertEquals(even, transfers.get(i).isCommitted());
+        }
+    }
+
+    @Test
+    public void settleAllCountsPaidOrdersAndIgnoresFailures() throws Exception {
+        // given
+        PaymentMethod failing = transfer -> {
+            throw new IllegalStateException("Gateway unavailable");
+        };
+        List<Order> orders = Arrays.asList(getOrder(transfer -> true), getOrder(failing), getOrder(transfer -> false));
+        List<MoneyTransfer> transfers = Arrays.asList(getTransfer(1), getTransfer(2), getTransfer(3));
+
+        // when
+        int paid;
+        try(PaymentEngine engine = new PaymentEngine()) {
+            paid = engine.settleAll(orders, transfers).get(5, TimeUnit.SECONDS);
+        }
+
+        // then
+        assertEquals(1, paid);
+        assertTrue(orders.get(0).isPaid());
+        assertFalse(orders.get(1).isPaid());
+        assertFalse(transfers.get(1).isCommitted());
+        assertFalse(orders.get(2).isPaid());
+    }
+
+    @Test
+    public void failedCommitCompletesFutureExceptionally() throws Exception {
+        // given
+        IllegalStateException failure = new IllegalStateException("Gateway unavailable");
+        Order order = getOrder(transfer -> {
+            throw failure;
+        });
+
+        // when
+        try(PaymentEngine engine = new PaymentEngine()) {
+            CompletableFuture<Boolean> result = engine.pay(order, getTransfer(12));
+            ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+
+            // then
+            assertSame(failure, thrown.getCause());
+            assertFalse(order.isPaid());
+        }
+    }
+
+    @Test
+    public void rejectedTransferIsNotCommitted() throws Exception {
+        // given
+        AtomicInteger commits = new AtomicInteger();
+        Order order = getOrder(transfer -> commits.incrementAndGet() > 0);
+        MoneyTransfer transfer = new MoneyTransfer(BigInteger.valueOf(1234), "Jan Kowalski", "Order 1", 1000);
+
+        // when
+        boolean paid;
+        try(PaymentEngine engine = new PaymentEngine()) {
+            paid = engine.pay(order, transfer).get(5, TimeUnit.SECONDS);
+        }
+
+        // then
+        assertFalse(paid);
+        assertFalse(order.isPaid());
+        assertFalse(transfer.isCommitted());
+        assertEquals(0, commits.get());
+    }
+
+    @Test
+    public void settleWithMismatchedLists() throws Exception {
+        try(PaymentEngine engine = new PaymentEngine()) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> engine.settle(Collections.singletonList(getOrder(transfer -> true)), Collections.emptyList()));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package pl.edu.agh.internetshop;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static pl.edu.agh.internetshop.util.PaymentFixtures.TOTAL_PRICE_MINOR_UNITS;
+import static pl.edu.agh.internetshop.util.PaymentFixtures.getOrder;
+
+public class PaymentLedgerTest {
+    private static MoneyTransfer getTransfer(String description) {
+        return new MoneyTransfer(BigInteger.valueOf(1234), "Jan Kowalski", description, TOTAL_PRICE_MINOR_UNITS);
+    }
+
+    @Test
+    public void concurrentDuplicatesAreCommittedOnce() throws Exception {
+        // given
+        AtomicInteger commits = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Order order = getOrder(transfer -> {
+            commits.incrementAndGet();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        });
+        List<MoneyTransfer> transfers = new ArrayList<>();
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+
+        // when
+        try(PaymentEngine engine = new PaymentEngine()) {
+            PaymentLedger ledger = new PaymentLedger(engine);
+            for(int i = 0; i < 10; i++) {
+                MoneyTransfer transfer = getTransfer("Order 1");
+                transfers.add(transfer);
+                results.add(ledger.pay(order, transfer));
+            }
+            release.countDown();
+            for(CompletableFuture<Boolean> result: results) assertTrue(result.get(5, TimeUnit.SECONDS));
+        }
+
+        // then
+        assertEquals(1, commits.get());
+        assertTrue(order.isPaid());
+        for(MoneyTransfer transfer: transfers) assertTrue(transfer.isCommitted());
+    }
+
+    @Test
+    public void committedPaymentIsForgottenAfterRetention() throws Exception {
+        // given
+        AtomicInteger commits = new AtomicInteger();
+        AtomicLong clock = new AtomicLong();
+        Order order = getOrder(transfer -> commits.incrementAndGet() > 0);
+        // without a description, so the engine's validator does not reject the retry itself
+
+        // when
+        try(PaymentEngine engine = new PaymentEngine()) {
+            PaymentLedger ledger = new PaymentLedger(engine, 100, clock::get);
+            assertTrue(ledger.pay(order, getTransfer(null)).get(5, TimeUnit.SECONDS));
+            clock.set(99);
+            assertTrue(ledger.isPaid(order, getTransfer(null)));
+            clock.set(100);
+            boolean retained = ledger.isPaid(order, getTransfer(null));
+            int size = ledger.size();
+            assertTrue(ledger.pay(order, getTransfer(null)).get(5, TimeUnit.SECONDS));
+
+            // then
+            assertFalse(retained);
+            assertEquals(0, size);
+            assertEquals(2, commits.get());
+        }
+    }
+
+    @Test
+    public void nonPositiveRetention() {
+        try(PaymentEngine engine = new PaymentEngine()) {
+            assertThrows(IllegalArgumentException.class, () -> new PaymentLedger(engine, 0, TimeUnit.HOURS));
+        }
+    }
+
+    @Test
+    public void completedPaymentIsNotCommittedAgain() throws Exception {
+        // given
+        AtomicInteger commits = new AtomicInteger();
+        Order order = getOrder(transfer -> commits.incrementAndGet() > 0);
+
+        // when
+        try(PaymentEngine engine = new PaymentEngine()) {
+            PaymentLedger ledger = new PaymentLedger(engine);
+            assertTrue(ledger.pay(order, getTransfer("Order 1")).get(5, TimeUnit.SECONDS));
+            MoneyTransfer retry = getTransfer("Order 1");
+            assertTrue(ledger.pay(order, retry).get(5, TimeUnit.SECONDS));
+
+            // then
+            assertEquals(1, commits.get());
+            assertTrue(retry.isCommitted());
+            assertTrue(ledger.isPaid(order, retry));
+        }
+    }
+
+    @Test
+    public void differentOrdersAreNotDeduplicated() throws Exception {
+        // given
+        AtomicInteger commits = new AtomicInteger();
+        PaymentMethod paymentMethod = transfer -> commits.incrementAndGet() > 0;
+
+        // when
+        try(PaymentEngine engine = new PaymentEngine()) {
+            PaymentLedger ledger = new PaymentLedger(engine);
+            assertTrue(ledger.pay(getOrder(paymentMethod), getTransfer("Order 1")).get(5, TimeUnit.SECONDS));
+            assertTrue(ledger.pay(getOrder(paymentMethod), getTransfer("Order 2")).get(5, TimeUnit.SECONDS));
+        }
+
+        // then
+        assertEquals(2, commits.get());
+    }
+
+    @Test
+    public void failedPaymentCanBeRetried() throws Exception {
+        // given
+        AtomicInteger commits = new AtomicInteger();
+        Order order = getOrder(transfer -> {
+            if(commits.incrementAndGet() == 1) throw new IllegalStateException("Gateway timeout");
+            return true;
+        });
+
+        // when
+        try(PaymentEngine engine = new PaymentEngine()) {
+            PaymentLedger ledger = new PaymentLedger(engine);
+            CompletableFuture<Boolean> first = ledger.pay(order, getTransfer("Order 1"));
+            assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            boolean paid = ledger.pay(order, getTransfer("Order 1")).get(5, TimeUnit.SECONDS);
+
+            // then
+            assertTrue(paid);
+            assertEquals(2, commits.get());
+            assertTrue(order.isPaid());
+        }
+    }
+}
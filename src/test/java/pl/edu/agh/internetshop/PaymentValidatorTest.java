@@ -0,0 +1,137 @@
+package pl.edu.agh.internetshop;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static pl.edu.agh.internetshop.util.PaymentFixtures.TOTAL_PRICE_MINOR_UNITS;
+import static pl.edu.agh.internetshop.util.PaymentFixtures.getOrder;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class PaymentValidatorTest {
+    private static MoneyTransfer getTransfer(String description, int amount) {
+        return new MoneyTransfer(BigInteger.valueOf(1234), "Jan Kowalski", description, amount);
+    }
+
+    @Test
+    public void transferOfTotalPriceIsValid() {
+        // given
+        PaymentValidator validator = new PaymentValidator();
+
+        // when then
+        assertTrue(validator.validate(getOrder(mock(PaymentMethod.class)), getTransfer("Order 1", TOTAL_PRICE_MINOR_UNITS)));
+    }
+
+    @Test
+    public void transferOfWrongAmountIsRejected() {
+        // given
+        PaymentValidator validator = new PaymentValidator();
+        Order order = getOrder(mock(PaymentMethod.class));
+
+        // when then
+        assertFalse(validator.validate(order, getTransfer("Order 1", 1000)));
+        assertFalse(validator.validate(order, getTransfer("Order 2", 1231)));
+    }
+
+    @Test
+    public void transferForPriceWithMoreFractionDigitsIsValid() {
+        // given
+        PaymentValidator validator = new PaymentValidator();
+        Order order = new Order(Collections.singletonList(new Product("Fuel", new BigDecimal("5.999"))));
+        order.setPaymentMethod(mock(PaymentMethod.class));
+
+        // when then
+        assertTrue(validator.validate(order, getTransfer("Order 1", 738))); // 5.999 * 1.23 = 7.37877
+    }
+
+    @Test
+    public void oldestDescriptionsAreForgotten() {
+        // given
+        PaymentValidator validator = new PaymentValidator(1);
+        validator.validate(getOrder(mock(PaymentMethod.class)), getTransfer("Order 1", TOTAL_PRICE_MINOR_UNITS));
+        validator.validate(getOrder(mock(PaymentMethod.class)), getTransfer("Order 2", TOTAL_PRICE_MINOR_UNITS));
+
+        // when
+        boolean firstAgainValid = validator.validate(getOrder(mock(PaymentMethod.class)), getTransfer("Order 1", TOTAL_PRICE_MINOR_UNITS));
+        boolean duplicateValid = validator.validate(getOrder(mock(PaymentMethod.class)), getTransfer("Order 1", TOTAL_PRICE_MINOR_UNITS));
+
+        // then
+        assertTrue(firstAgainValid);
+        assertFalse(duplicateValid);
+    }
+
+    @Test
+    public void incorrectMaximumNumberOfDescriptions() {
+        // when then
+        assertThrows(IllegalArgumentException.class, () -> new PaymentValidator(0));
+    }
+
+    @Test
+    public void duplicateDescriptionIsRejected() {
+        // given
+        PaymentValidator validator = new PaymentValidator();
+        MoneyTransfer first = getTransfer("Order 1", TOTAL_PRICE_MINOR_UNITS);
+
+        // when
+        boolean firstValid = validator.validate(getOrder(mock(PaymentMethod.class)), first);
+        boolean duplicateValid = validator.validate(getOrder(mock(PaymentMethod.class)), getTransfer("Order 1", TOTAL_PRICE_MINOR_UNITS));
+
+        // then
+        assertTrue(firstValid);
+        assertFalse(duplicateValid);
+        assertTrue(validator.validate(getOrder(mock(PaymentMethod.class)), first));
+    }
+
+    @Test
+    public void releasedDescriptionCanBeReused() {
+        // given
+        PaymentValidator validator = new PaymentValidator();
+        MoneyTransfer first = getTransfer("Order 1", TOTAL_PRICE_MINOR_UNITS);
+        validator.validate(getOrder(mock(PaymentMethod.class)), first);
+
+        // when
+        validator.release(first);
+
+        // then
+        assertTrue(validator.validate(getOrder(mock(PaymentMethod.class)), getTransfer("Order 1", TOTAL_PRICE_MINOR_UNITS)));
+    }
+
+    @Test
+    public void paymentTransactionValidatesTransfer() {
+        // given
+        MoneyTransferPaymentTransaction transaction = mock(MoneyTransferPaymentTransaction.class);
+        MoneyTransfer transfer = getTransfer("Order 1", TOTAL_PRICE_MINOR_UNITS);
+        given(transaction.validate(transfer)).willReturn(false);
+
+        // when
+        boolean valid = new PaymentValidator().validate(getOrder(transaction), transfer);
+
+        // then
+        assertFalse(valid);
+        verify(transaction).validate(transfer);
+    }
+
+    @Test
+    public void resultIsCachedPerTransfer() {
+        // given
+        MoneyTransferPaymentTransaction transaction = mock(MoneyTransferPaymentTransaction.class);
+        MoneyTransfer transfer = getTransfer("Order 1", TOTAL_PRICE_MINOR_UNITS);
+        given(transaction.validate(transfer)).willReturn(true);
+        PaymentValidator validator = new PaymentValidator();
+        Order order = getOrder(transaction);
+
+        // when
+        validator.validate(order, transfer);
+        boolean valid = validator.validate(order, transfer);
+
+        // then
+        assertTrue(valid);
+        verify(transaction, times(1)).validate(transfer);
+    }
+}
@@ -0,0 +1,195 @@
+package pl.edu.agh.internetshop;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.edu.agh.internetshop.search.ProductNameSearchStrategy;
+import pl.edu.agh.internetshop.search.RecipientSearchStrategy;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistentOrderHistoryTest {
+    @TempDir
+    Path directory;
+
+    private Order getOrder(String recipientName, Product... products) {
+        Order order = new Order(Arrays.asList(products));
+        order.setShipment(new Shipment(new Address("Internet Shop", "1 Market Street", "30-059", "Krak\u00f3w"),
+                new Address(recipientName, "1234 Main Street", "01003", "New York")));
+        return order;
+    }
+
+    private Product product(String name, String price) {
+        return new Product(name, new BigDecimal(price));
+    }
+
+    @Test
+    public void addNullOrder() throws IOException {
+        // given
+        try(PersistentOrderHistory history = new PersistentOrderHistory(directory)) {
+            // when then
+            assertThrows(NullPointerException.class, () -> history.addOrder(null));
+        }
+    }
+
+    @Test
+    public void readOrdersAfterRestart() throws IOException {
+        // given
+        Product milk = product("Milk", "3.49");
+        Product bread = product("Bread", "4.20");
+        Order order = getOrder("Millie Petrozza", milk, bread);
+        order.setDiscount(bread, new BigDecimal("0.25"));
+        order.setGeneralDiscount(new BigDecimal("0.1"));
+        order.getShipment().setShipped(true);
+        Order withoutShipment = new Order(Arrays.asList(milk));
+        try(PersistentOrderHistory history = new PersistentOrderHistory(directory)) {
+            history.addOrder(order);
+            history.addOrder(withoutShipment);
+        }
+
+        // when
+        List<Order> orders;
+        try(PersistentOrderHistory history = new PersistentOrderHistory(directory)) {
+            orders = history.getOrders();
+        }
+
+        // then
+        assertEquals(2, orders.size());
+        Order restored = orders.get(0);
+        assertEquals(order.getId(), restored.getId());
+        assertEquals(order.getProducts(), restored.getProducts());
+        assertEquals(order.getDiscount(bread), restored.getDiscount(bread));
+        assertEquals(order.getTotalPrice(), restored.getTotalPrice());
+        assertEquals("Millie Petrozza", restored.getRecipientName());
+        assertEquals("Krak\u00f3w", restored.getShipment().getSenderAddress().getCity());
+        assertTrue(restored.isSent());
+        assertFalse(restored.isPaid());
+        assertEquals(withoutShipment.getId(), orders.get(1).getId());
+        assertNull(orders.get(1).getShipment());
+    }
+
+    @Test
+    public void appendAfterRestart() throws IOException {
+        // given
+        Order order1 = getOrder("Millie Petrozza", product("Milk", "3.49"));
+        Order order2 = getOrder("Nick Holmes", product("Milk", "3.49"));
+        try(PersistentOrderHistory history = new PersistentOrderHistory(directory)) {
+            history.addOrder(order1);
+        }
+
+        // when
+        try(PersistentOrderHistory history = new PersistentOrderHistory(directory)) {
+            history.addOrder(order2);
+        }
+
+        // then
+        try(PersistentOrderHistory history = new PersistentOrderHistory(directory)) {
+            List<Order> orders = history.getOrders();
+            assertEquals(2, orders.size());
+            assertEquals(order1.getId(), orders.get(0).getId());
+            assertEquals(order2.getId(), orders.get(1).getId());
+        }
+    }
+
+    @Test
+    public void searchAcrossSegments() throws IOException {
+        // given
+        try(PersistentOrderHistory history = new PersistentOrderHistory(directory, 1024)) {
+            for(int i = 0; i < 100; i++) history.addOrder(getOrder("Recipient " + (i % 10), product("Product " + (i % 3), "1.00")));
+
+            // when
+            List<Order> byRecipient = history.searchOrders(new RecipientSearchStrategy("Recipient 3"));
+            List<Order> byProduct = history.searchOrders(new ProductNameSearchStrategy("Product 1"));
+
+            // then
+            assertEquals(10, byRecipient.size());
+            assertEquals(33, byProduct.size());
+        }
+        try(Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.collect(Collectors.toList()).size() > 1);
+        }
+    }
+
+    @Test
+    public void damagedRecordIsDroppedOnRecovery() throws IOException {
+        // given
+        Order order1 = getOrder("Millie Petrozza", product("Milk", "3.49"));
+        Order order2 = getOrder("Nick Holmes", product("Milk", "3.49"));
+        int firstRecordSize;
+        try(PersistentOrderHistory history = new PersistentOrderHistory(directory, 4096)) {
+            history.addOrder(order1);
+            firstRecordSize = 8 + PersistentOrderHistory.encode(order1).length;
+            history.addOrder(order2);
+        }
+        Path segment = directory.resolve("orders-00000000.log");
+        try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3}), firstRecordSize + 20);
+        }
+
+        // when
+        try(PersistentOrderHistory history = new PersistentOrderHistory(directory, 4096)) {
+            history.addOrder(order2);
+
+            // then
+            List<Order> orders = history.getOrders();
+            assertEquals(2, orders.size());
+            assertEquals(order1.getId(), orders.get(0).getId());
+            assertEquals(order2.getId(), orders.get(1).getId());
+        }
+    }
+
+    @Test
+    public void orderTooBigForSegment() throws IOException {
+        // given
+        try(PersistentOrderHistory history = new PersistentOrderHistory(directory, 64)) {
+            // when then
+            assertThrows(IllegalArgumentException.class, () -> history.addOrder(getOrder("Millie Petrozza", product("Milk", "3.49"))));
+        }
+    }
+
+    private static RecipientSearchStrategy countingRecipientStrategy(String recipientName, AtomicInteger checked) {
+        return new RecipientSearchStrategy(recipientName) {
+            @Override
+            public boolean filter(Order order) {
+                checked.incrementAndGet();
+                return super.filter(order);
+            }
+        };
+    }
+
+    @Test
+    public void searchSkipsSegmentsWithoutRecipient() throws IOException {
+        // given
+        try(PersistentOrderHistory history = new PersistentOrderHistory(directory, 1024)) {
+            for(int i = 0; i < 100; i++) history.addOrder(getOrder("Millie Petrozza", product("Milk", "3.49")));
+            history.addOrder(getOrder("Nick Holmes", product("Milk", "3.49")));
+        }
+
+        try(PersistentOrderHistory history = new PersistentOrderHistory(directory, 1024)) {
+            AtomicInteger missing = new AtomicInteger();
+            AtomicInteger last = new AtomicInteger();
+
+            // when
+            List<Order> none = history.searchOrders(countingRecipientStrategy("Fernando Ribeiro", missing));
+            List<Order> found = history.searchOrders(countingRecipientStrategy("Nick Holmes", last));
+
+            // then
+            assertTrue(none.isEmpty());
+            assertEquals(0, missing.get());
+            assertEquals(1, found.size());
+            assertTrue(last.get() < 101);
+        }
+    }
+}
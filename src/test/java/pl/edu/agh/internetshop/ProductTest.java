@@ -3,6 +3,7 @@ package pl.edu.agh.internetshop;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static pl.edu.agh.internetshop.util.CustomAssertions.assertBigDecimalCompareValue;
 
 import java.math.BigDecimal;
@@ -35,4 +36,16 @@ public class ProductTest {
         // then
         assertBigDecimalCompareValue(product.getPrice(), PRICE);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testEqualProducts() throws Exception{
+        // when
+        Product product1 = new Product(NAME, PRICE);
+        Product product2 = new Product(NAME, PRICE);
+
+        // then
+        assertEquals(product1, product2);
+        assertEquals(product1.hashCode(), product2.hashCode());
+        assertNotEquals(product1, new Product(NAME, BigDecimal.valueOf(2)));
+    }
+}
@@ -0,0 +1,320 @@
+package pl.edu.agh.internetshop;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShipmentDispatcherTest {
+    private static Order getOrder(String city, ShipmentMethod shipmentMethod) {
+        Order order = new Order(Collections.singletonList(new Product("Book", new BigDecimal("10.00"))));
+        order.setShipment(new Shipment(new Address("Internet Shop", "1 Market Street", "30-059", "Krakow"),
+                new Address("Jan Kowalski", "Main Street 1", "00-001", city)));
+        order.setShipmentMethod(shipmentMethod);
+        return order;
+    }
+
+    @Test
+    public void dispatchSendsShipment() throws Exception {
+        // given
+        List<Object> sent = Collections.synchronizedList(new ArrayList<>());
+        ShipmentMethod carrier = (shipment, sender, recipient) -> sent.add(shipment);
+        Order order = getOrder("Warsaw", carrier);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // when
+        boolean result;
+        try(ShipmentDispatcher dispatcher = new ShipmentDispatcher(executor, 8, 2, 16)) {
+            result = dispatcher.dispatch(order).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        assertTrue(result);
+        assertTrue(order.getShipment().isShipped());
+        assertEquals(Collections.singletonList(order.getShipment()), sent);
+    }
+
+    @Test
+    public void failedSendLeavesShipmentUnsent() throws Exception {
+        // given
+        ShipmentMethod carrier = (shipment, sender, recipient) -> false;
+        Order order = getOrder("Warsaw", carrier);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // when
+        boolean result;
+        try(ShipmentDispatcher dispatcher = new ShipmentDispatcher(executor, 8, 1, 16)) {
+            result = dispatcher.dispatch(order).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        assertFalse(result);
+        assertFalse(order.getShipment().isShipped());
+    }
+
+    @Test
+    public void carrierExceptionCompletesFutureExceptionally() throws Exception {
+        // given
+        IllegalStateException failure = new IllegalStateException("Carrier unavailable");
+        ShipmentMethod carrier = (shipment, sender, recipient) -> {
+            throw failure;
+        };
+        Order order = getOrder("Warsaw", carrier);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // when
+        CompletableFuture<Boolean> result;
+        try(ShipmentDispatcher dispatcher = new ShipmentDispatcher(executor, 8, 1, 16)) {
+            result = dispatcher.dispatch(order);
+            ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+
+            // then
+            assertSame(failure, thrown.getCause());
+            assertFalse(order.getShipment().isShipped());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void dispatchOrderWithoutShipmentMethod() throws Exception {
+        // given
+        Order order = getOrder("Warsaw", null);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // when then
+        try(ShipmentDispatcher dispatcher = new ShipmentDispatcher(executor, 8, 1, 16)) {
+            assertThrows(NullPointerException.class, () -> dispatcher.dispatch(order));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void nonPositiveLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new ShipmentDispatcher(Runnable::run, 0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new ShipmentDispatcher(Runnable::run, 1, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new ShipmentDispatcher(Runnable::run, 1, 1, 0));
+    }
+
+    @Test
+    public void everyShipmentIsSentAsItsOwnRequest() throws Exception {
+        // given
+        List<String> sent = new ArrayList<>();
+        ShipmentMethod carrier = (shipment, sender, recipient) -> sent.add(recipient.getCity());
+        List<Runnable> submitted = Collections.synchronizedList(new ArrayList<>());
+        List<Order> orders = new ArrayList<>();
+        for(int i = 0; i < 20; i++) orders.add(getOrder(i % 2 == 0 ? "Warsaw" : "Gdansk", carrier));
+
+        // when
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        try(ShipmentDispatcher dispatcher = new ShipmentDispatcher(submitted::add, 3, 100, 100)) {
+            for(Order order: orders) results.add(dispatcher.dispatch(order));
+        }
+        for(Runnable request: submitted) {
+            sent.clear();
+            request.run();
+            assertEquals(1, sent.size());
+        }
+
+        // then
+        assertEquals(20, submitted.size());
+        for(CompletableFuture<Boolean> result: results) assertTrue(result.get(5, TimeUnit.SECONDS));
+        for(Order order: orders) assertTrue(order.getShipment().isShipped());
+    }
+
+    @Test
+    public void batchIsSentConcurrently() throws Exception {
+        // given
+        CountDownLatch allSending = new CountDownLatch(4);
+        ShipmentMethod carrier = (shipment, sender, recipient) -> {
+            allSending.countDown();
+            try {
+                return allSending.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // when
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        try(ShipmentDispatcher dispatcher = new ShipmentDispatcher(executor, 4, 4, 4)) {
+            for(int i = 0; i < 4; i++) results.add(dispatcher.dispatch(getOrder("Warsaw", carrier)));
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(15, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        for(CompletableFuture<Boolean> result: results) assertTrue(result.get());
+    }
+
+    @Test
+    public void inFlightRequestsAreBounded() throws Exception {
+        // given
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ShipmentMethod carrier = (shipment, sender, recipient) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return true;
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // when
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        try(ShipmentDispatcher dispatcher = new ShipmentDispatcher(executor, 8, 2, 4)) {
+            for(int i = 0; i < 40; i++) results.add(dispatcher.dispatch(getOrder("Warsaw", carrier)));
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+    private static ShipmentMethod getBlockedCarrier(CountDownLatch release) {
+        return (shipment, sender, recipient) -> {
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        };
+    }
+
+    private static void awaitQueueSize(ShipmentDispatcher dispatcher, int size) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(dispatcher.getQueueSize() < size) {
+            assertTrue(System.nanoTime() < deadline, "Queue did not fill up");
+            Thread.yield();
+        }
+    }
+
+    @Test
+    public void fullQueueBlocksDispatch() throws Exception {
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        ShipmentMethod carrier = getBlockedCarrier(release);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService producer = Executors.newSingleThreadExecutor();
+
+        try(ShipmentDispatcher dispatcher = new ShipmentDispatcher(executor, 1, 1, 1)) {
+            // when
+            CompletableFuture<Void> dispatched = CompletableFuture.runAsync(() -> {
+                try {
+                    for(int i = 0; i < 5; i++) dispatcher.dispatch(getOrder("Warsaw", carrier));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, producer);
+
+            // then
+            // one order is being sent, one waits for the executor and one fills the queue
+            awaitQueueSize(dispatcher, 1);
+            assertFalse(dispatched.isDone());
+            release.countDown();
+            dispatched.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+            producer.shutdown();
+        }
+    }
+
+    @Test
+    public void closeRejectsDispatchesWaitingForFullQueue() throws Exception {
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        ShipmentMethod carrier = getBlockedCarrier(release);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService producer = Executors.newSingleThreadExecutor();
+        ShipmentDispatcher dispatcher = new ShipmentDispatcher(executor, 1, 1, 1);
+        List<CompletableFuture<Boolean>> results = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> dispatched = CompletableFuture.runAsync(() -> {
+            try {
+                for(int i = 0; i < 5; i++) results.add(dispatcher.dispatch(getOrder("Warsaw", carrier)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, producer);
+        awaitQueueSize(dispatcher, 1);
+
+        try {
+            // when
+            CompletableFuture<Void> closed = CompletableFuture.runAsync(dispatcher::close);
+
+            // then
+            ExecutionException thrown = assertThrows(ExecutionException.class, () -> dispatched.get(5, TimeUnit.SECONDS));
+            assertTrue(thrown.getCause() instanceof RejectedExecutionException);
+            release.countDown();
+            closed.get(5, TimeUnit.SECONDS);
+            assertTrue(results.size() < 5);
+            for(CompletableFuture<Boolean> result: results) assertTrue(result.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            producer.shutdown();
+        }
+    }
+
+    @Test
+    public void dispatchAfterCloseIsRejected() {
+        // given
+        ShipmentDispatcher dispatcher = new ShipmentDispatcher(Runnable::run, 1, 1, 1);
+        dispatcher.close();
+
+        // when then
+        assertThrows(RejectedExecutionException.class, () -> dispatcher.dispatch(getOrder("Warsaw", (shipment, sender, recipient) -> true)));
+    }
+
+    @Test
+    public void routeExceptionCompletesOnlyItsFutureExceptionally() throws Exception {
+        // given
+        IllegalStateException failure = new IllegalStateException("Unknown route");
+        ShipmentMethod carrier = (shipment, sender, recipient) -> true;
+        Function<Order, Object> routeOf = order -> {
+            String city = order.getShipment().getRecipientAddress().getCity();
+            if(city.equals("Atlantis")) throw failure;
+            return city;
+        };
+
+        // when
+        CompletableFuture<Boolean> unknown;
+        CompletableFuture<Boolean> known;
+        try(ShipmentDispatcher dispatcher = new ShipmentDispatcher(Runnable::run, 8, 1, 16, routeOf)) {
+            unknown = dispatcher.dispatch(getOrder("Atlantis", carrier));
+            known = dispatcher.dispatch(getOrder("Warsaw", carrier));
+        }
+
+        // then
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> unknown.get(5, TimeUnit.SECONDS));
+        assertSame(failure, thrown.getCause());
+        assertTrue(known.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,210 @@
+package pl.edu.agh.internetshop;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShipmentTrackerTest {
+    private static Shipment getShipment() {
+        return new Shipment(new Address("Internet Shop", "1 Market Street", "30-059", "Krakow"),
+                new Address("Jan Kowalski", "Main Street 1", "00-001", "Warsaw"));
+    }
+
+    private static SurfaceMailBus mailBus(Set<Object> sent, AtomicInteger polls) {
+        return new SurfaceMailBus() {
+            @Override
+            public boolean isSent(Object shipment) {
+                polls.incrementAndGet();
+                return sent.contains(shipment);
+            }
+
+            @Override
+            public boolean send(Object shipment, Address sender, Address recipient) {
+                return sent.add(shipment);
+            }
+        };
+    }
+
+    @Test
+    public void sentShipmentIsMarkedShipped() {
+        // given
+        Set<Object> sent = ConcurrentHashMap.newKeySet();
+        AtomicLong clock = new AtomicLong();
+        ShipmentTracker tracker = new ShipmentTracker(mailBus(sent, new AtomicInteger()), 100, 1000, clock::get, new Random(1));
+        Shipment shipment = getShipment();
+        CompletableFuture<Shipment> result = tracker.track(shipment);
+
+        // when
+        sent.add(shipment);
+        clock.set(100);
+        int found = tracker.tick();
+
+        // then
+        assertEquals(1, found);
+        assertTrue(shipment.isShipped());
+        assertSame(shipment, result.join());
+        assertEquals(0, tracker.getPendingCount());
+    }
+
+    @Test
+    public void shipmentIsNotPolledBeforeItIsDue() {
+        // given
+        AtomicInteger polls = new AtomicInteger();
+        AtomicLong clock = new AtomicLong();
+        ShipmentTracker tracker = new ShipmentTracker(mailBus(ConcurrentHashMap.newKeySet(), polls), 100, 1000, clock::get, new Random(1));
+        tracker.track(getShipment());
+
+        // when
+        clock.set(50);
+        tracker.tick();
+
+        // then
+        assertEquals(0, polls.get());
+        assertEquals(1, tracker.getPendingCount());
+    }
+
+    @Test
+    public void pollIntervalGrowsUpToMaximum() {
+        // given
+        AtomicInteger polls = new AtomicInteger();
+        AtomicLong clock = new AtomicLong();
+        ShipmentTracker tracker = new ShipmentTracker(mailBus(ConcurrentHashMap.newKeySet(), polls), 100, 1000, clock::get, new Random(1));
+        tracker.track(getShipment());
+
+        // when
+        for(long time = 0; time <= 10_000; time += 10) {
+            clock.set(time);
+            tracker.tick();
+        }
+
+        // then polls at intervals of about 100, 200, 400, 800 and then 1000
+        assertTrue(polls.get() >= 10 && polls.get() <= 16, "polls: " + polls.get());
+    }
+
+    @Test
+    public void manyShipmentsArePolledInOneTick() {
+        // given
+        Set<Object> sent = ConcurrentHashMap.newKeySet();
+        AtomicInteger polls = new AtomicInteger();
+        AtomicLong clock = new AtomicLong();
+        ShipmentTracker tracker = new ShipmentTracker(mailBus(sent, polls), 100, 1000, clock::get, new Random(1));
+        for(int i = 0; i < 1000; i++) {
+            Shipment shipment = getShipment();
+            tracker.track(shipment);
+            if(i % 2 == 0) sent.add(shipment);
+        }
+
+        // when
+        clock.set(100);
+        int found = tracker.tick();
+
+        // then
+        assertEquals(1000, polls.get());
+        assertEquals(500, found);
+        assertEquals(500, tracker.getPendingCount());
+    }
+
+    @Test
+    public void failingPollKeepsShipmentTracked() {
+        // given
+        AtomicLong clock = new AtomicLong();
+        SurfaceMailBus failing = new SurfaceMailBus() {
+            @Override
+            public boolean isSent(Object shipment) {
+                throw new IllegalStateException("Carrier unavailable");
+            }
+
+            @Override
+            public boolean send(Object shipment, Address sender, Address recipient) {
+                return false;
+            }
+        };
+        ShipmentTracker tracker = new ShipmentTracker(failing, 100, 1000, clock::get, new Random(1));
+        Shipment shipment = getShipment();
+        tracker.track(shipment);
+
+        // when
+        clock.set(100);
+        tracker.tick();
+
+        // then
+        assertFalse(shipment.isShipped());
+        assertEquals(1, tracker.getPendingCount());
+    }
+
+    @Test
+    public void shippedShipmentIsNotTracked() {
+        // given
+        ShipmentTracker tracker = new ShipmentTracker(mailBus(ConcurrentHashMap.newKeySet(), new AtomicInteger()), 1, 10, TimeUnit.SECONDS);
+        Shipment shipment = getShipment();
+        shipment.setShipped(true);
+
+        // when
+        CompletableFuture<Shipment> result = tracker.track(shipment);
+
+        // then
+        assertTrue(result.isDone());
+        assertEquals(0, tracker.getPendingCount());
+    }
+
+    @Test
+    public void closeCompletesPendingShipmentsExceptionally() {
+        // given
+        ShipmentTracker tracker = new ShipmentTracker(mailBus(ConcurrentHashMap.newKeySet(), new AtomicInteger()), 1, 10, TimeUnit.SECONDS);
+        CompletableFuture<Shipment> pending = tracker.track(getShipment());
+
+        // when
+        tracker.close();
+        CompletableFuture<Shipment> afterClose = tracker.track(getShipment());
+
+        // then
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> pending.get(5, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof RejectedExecutionException);
+        assertTrue(afterClose.isCompletedExceptionally());
+        assertEquals(0, tracker.getPendingCount());
+    }
+
+    @Test
+    public void incorrectIntervals() {
+        SurfaceMailBus mailBus = mailBus(ConcurrentHashMap.newKeySet(), new AtomicInteger());
+        assertThrows(IllegalArgumentException.class, () -> new ShipmentTracker(mailBus, 0, 10, TimeUnit.MILLISECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new ShipmentTracker(mailBus, 10, 5, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void scheduledTrackerCompletesShipments() throws Exception {
+        // given
+        Set<Object> sent = ConcurrentHashMap.newKeySet();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        Map<Shipment, CompletableFuture<Shipment>> results = new ConcurrentHashMap<>();
+
+        // when
+        try(ShipmentTracker tracker = new ShipmentTracker(mailBus(sent, new AtomicInteger()), 1, 20, TimeUnit.MILLISECONDS)) {
+            tracker.start(scheduler, 1, TimeUnit.MILLISECONDS);
+            for(int i = 0; i < 100; i++) {
+                Shipment shipment = getShipment();
+                results.put(shipment, tracker.track(shipment));
+                sent.add(shipment);
+            }
+            CompletableFuture.allOf(results.values().toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        } finally {
+            scheduler.shutdown();
+        }
+
+        // then
+        for(Shipment shipment: results.keySet()) assertTrue(shipment.isShipped());
+    }
+}
@@ -0,0 +1,107 @@
+package pl.edu.agh.internetshop;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaxTableTest {
+    private static Map<String, BigDecimal> getClassRates() {
+        Map<String, BigDecimal> classRates = new HashMap<>();
+        classRates.put("food", new BigDecimal("1.05"));
+        classRates.put("books", new BigDecimal("1.08"));
+        return classRates;
+    }
+
+    @Test
+    public void productsPayRatesOfTheirClasses() {
+        // given
+        TaxTable table = new TaxTable(new BigDecimal("1.23"), getClassRates(),
+                product -> product.getName().equals("Bread") ? "food" : product.getName().equals("Book") ? "books" : null);
+
+        // when
+        Rate bread = table.getTaxRate(new Product("Bread", new BigDecimal("3.00")));
+        Rate book = table.getTaxRate(new Product("Book", new BigDecimal("30.00")));
+        Rate phone = table.getTaxRate(new Product("Phone", new BigDecimal("999.00")));
+
+        // then
+        assertEquals(Rate.of(new BigDecimal("1.05")), bread);
+        assertEquals(Rate.of(new BigDecimal("1.08")), book);
+        assertSame(table.getDefaultRate(), phone);
+    }
+
+    @Test
+    public void unknownClassPaysDefaultRate() {
+        // given
+        TaxTable table = new TaxTable(new BigDecimal("1.23"), getClassRates(), product -> "luxury");
+
+        // when
+        Rate rate = table.getTaxRate(new Product("Watch", new BigDecimal("500.00")));
+
+        // then
+        assertSame(table.getDefaultRate(), rate);
+    }
+
+    @Test
+    public void productIsClassifiedOnce() {
+        // given
+        AtomicInteger classifications = new AtomicInteger();
+        TaxTable table = new TaxTable(new BigDecimal("1.23"), getClassRates(), product -> {
+            classifications.incrementAndGet();
+            return "food";
+        });
+        Product bread = new Product("Bread", new BigDecimal("3.00"));
+
+        // when
+        Rate first = table.getTaxRate(bread);
+        Rate second = table.getTaxRate(bread);
+
+        // then
+        assertSame(first, second);
+        assertEquals(1, classifications.get());
+    }
+
+    @Test
+    public void productPricedByTwoTables() {
+        // given
+        TaxTable food = new TaxTable(new BigDecimal("1.23"), getClassRates(), product -> "food");
+        TaxTable books = new TaxTable(new BigDecimal("1.23"), getClassRates(), product -> "books");
+        Product product = new Product("Cookbook", new BigDecimal("20.00"));
+
+        // when
+        Rate first = food.getTaxRate(product);
+        Rate second = books.getTaxRate(product);
+        Rate third = food.getTaxRate(product);
+
+        // then
+        assertEquals(Rate.of(new BigDecimal("1.05")), first);
+        assertEquals(Rate.of(new BigDecimal("1.08")), second);
+        assertSame(first, third);
+    }
+
+    @Test
+    public void orderIsTaxedByTable() {
+        // given
+        TaxTable table = new TaxTable(new BigDecimal("1.23"), getClassRates(), product -> "food");
+        Order order = new Order(Collections.singletonList(new Product("Bread", new BigDecimal("10.00"))));
+
+        // when
+        order.setTaxPolicy(table);
+
+        // then
+        assertEquals(new BigDecimal("10.50"), order.getTotalPrice());
+    }
+
+    @Test
+    public void rateLowerThanOne() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TaxTable(new BigDecimal("0.23"), Collections.emptyMap(), product -> null));
+        assertThrows(IllegalArgumentException.class,
+                () -> new TaxTable(new BigDecimal("1.23"), Collections.singletonMap("food", new BigDecimal("0.95")), product -> null));
+    }
+}
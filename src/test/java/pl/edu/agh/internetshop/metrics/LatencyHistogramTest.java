@@ -0,0 +1,72 @@
+package pl.edu.agh.internetshop.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+    @Test
+    public void bucketsCoverEveryValue() {
+        // when then
+        for(long value: new long[] {0, 1, 63, 64, 65, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.highestValueOf(bucket) >= value);
+            assertTrue(bucket == 0 || LatencyHistogram.highestValueOf(bucket - 1) < value);
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinPrecision() {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(long value = 1; value <= 10000; value++) histogram.record(value * 1000);
+
+        // when
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        // then
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(10_000_000, snapshot.getMax());
+        assertEquals(5_000_000, snapshot.getPercentile(50), 5_000_000 * 0.04);
+        assertEquals(9_900_000, snapshot.getPercentile(99), 9_900_000 * 0.04);
+        assertEquals(10_000_000, snapshot.getPercentile(100));
+        assertEquals(5_000_500, snapshot.getMean(), 5_000_500 * 0.04);
+    }
+
+    @Test
+    public void emptyHistogram() {
+        // when
+        HistogramSnapshot snapshot = new LatencyHistogram().snapshot();
+
+        // then
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentile(99));
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getPercentile(101));
+    }
+
+    @Test
+    public void negativeValuesAreRecordedAsZero() {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // when
+        histogram.record(-5);
+
+        // then
+        assertEquals(1, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getMax());
+    }
+
+    @Test
+    public void resetClearsValues() {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+
+        // when
+        histogram.reset();
+
+        // then
+        assertEquals(0, histogram.snapshot().getCount());
+    }
+}
@@ -0,0 +1,168 @@
+package pl.edu.agh.internetshop.metrics;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.internetshop.MoneyTransfer;
+import pl.edu.agh.internetshop.MoneyTransferPaymentTransaction;
+import pl.edu.agh.internetshop.Order;
+import pl.edu.agh.internetshop.OrderHistory;
+import pl.edu.agh.internetshop.PaymentMethod;
+import pl.edu.agh.internetshop.Product;
+import pl.edu.agh.internetshop.ShipmentMethod;
+import pl.edu.agh.internetshop.SurfaceMailBus;
+import pl.edu.agh.internetshop.search.IndexedSearchStrategy;
+import pl.edu.agh.internetshop.search.ProductNameSearchStrategy;
+import pl.edu.agh.internetshop.search.SearchStrategy;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class MetricsTest {
+    private Order getOrder(String productName) {
+        return new Order(Collections.singletonList(new Product(productName, new BigDecimal("10.00"))));
+    }
+
+    @Test
+    public void instrumentedPaymentMethodCountsCommits() {
+        // given
+        Metrics metrics = new Metrics();
+        PaymentMethod paymentMethod = metrics.instrumentPayments("card", transfer -> transfer.getAmount() > 0);
+
+        // when
+        paymentMethod.commit(new MoneyTransfer(BigInteger.ONE, "owner", "first", 10));
+        paymentMethod.commit(new MoneyTransfer(BigInteger.ONE, "owner", "second", 0));
+
+        // then
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getCounter("payment.card.commit"));
+        assertEquals(1, snapshot.getCounter("payment.card.committed"));
+        assertEquals(2, snapshot.getHistograms().get("payment.card.commit").getCount());
+    }
+
+    @Test
+    public void instrumentedShipmentMethodCountsSends() {
+        // given
+        Metrics metrics = new Metrics();
+        ShipmentMethod shipmentMethod = metrics.instrumentShipments("post", (shipment, sender, recipient) -> true);
+
+        // when
+        shipmentMethod.send(new Object(), null, null);
+
+        // then
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getCounter("shipment.post.send"));
+        assertEquals(1, snapshot.getCounter("shipment.post.sent"));
+    }
+
+    @Test
+    public void instrumentedPaymentMethodKeepsTransferValidation() {
+        // given
+        Metrics metrics = new Metrics();
+        MoneyTransferPaymentTransaction transaction = mock(MoneyTransferPaymentTransaction.class);
+        MoneyTransfer transfer = new MoneyTransfer(BigInteger.ONE, "owner", "first", 10);
+        given(transaction.validate(transfer)).willReturn(false);
+
+        // when
+        PaymentMethod paymentMethod = metrics.instrumentPayments("transfer", transaction);
+
+        // then
+        assertTrue(paymentMethod instanceof MoneyTransferPaymentTransaction);
+        assertFalse(((MoneyTransferPaymentTransaction) paymentMethod).validate(transfer));
+        assertFalse(metrics.instrumentPayments("card", t -> true) instanceof MoneyTransferPaymentTransaction);
+    }
+
+    @Test
+    public void instrumentedShipmentMethodKeepsSentCheck() {
+        // given
+        Metrics metrics = new Metrics();
+        SurfaceMailBus mailBus = mock(SurfaceMailBus.class);
+        Object shipment = new Object();
+        given(mailBus.isSent(shipment)).willReturn(true);
+
+        // when
+        ShipmentMethod shipmentMethod = metrics.instrumentShipments("mail", mailBus);
+
+        // then
+        assertTrue(shipmentMethod instanceof SurfaceMailBus);
+        assertTrue(((SurfaceMailBus) shipmentMethod).isSent(shipment));
+    }
+
+    @Test
+    public void instrumentedSearchStrategyReportsSelectivity() {
+        // given
+        Metrics metrics = new Metrics();
+        SearchStrategy strategy = metrics.instrumentSearch("milk", order -> order.getProducts().get(0).getName().equals("Milk"));
+
+        // when
+        strategy.filter(getOrder("Milk"));
+        strategy.filter(getOrder("Bread"));
+        strategy.filter(getOrder("Butter"));
+        strategy.filter(getOrder("Eggs"));
+
+        // then
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(4, snapshot.getCounter("search.milk.evaluated"));
+        assertEquals(0.25, snapshot.getSelectivity("milk"));
+    }
+
+    @Test
+    public void instrumentedStrategyKeepsUsingIndexes() {
+        // given
+        Metrics metrics = new Metrics();
+        OrderHistory orderHistory = new OrderHistory(1);
+        orderHistory.setMetrics(metrics);
+        for(int i = 0; i < 10; i++) orderHistory.addOrder(getOrder(i == 3 ? "Milk" : "Bread"));
+        SearchStrategy strategy = metrics.instrumentSearch("milk", new ProductNameSearchStrategy("Milk"));
+
+        // when
+        int found = orderHistory.searchOrders(strategy).size();
+
+        // then
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertTrue(strategy instanceof IndexedSearchStrategy);
+        assertEquals(1, found);
+        assertEquals(1, snapshot.getCounter("search.milk.candidates"));
+        assertEquals(1, snapshot.getCounter("search.milk.evaluated"));
+        assertEquals(10, snapshot.getHistograms().get("orderHistory.addOrder").getCount());
+        assertEquals(1, snapshot.getHistograms().get("orderHistory.search").getCount());
+        assertEquals(1, snapshot.getCounter("orderHistory.search.results"));
+    }
+
+    @Test
+    public void disabledMetricsRecordNothing() {
+        // given
+        Metrics metrics = new Metrics();
+        metrics.setEnabled(false);
+        PaymentMethod paymentMethod = metrics.instrumentPayments("card", transfer -> true);
+        SearchStrategy strategy = metrics.instrumentSearch("all", order -> true);
+
+        // when
+        assertTrue(paymentMethod.commit(new MoneyTransfer(BigInteger.ONE, "owner", "first", 10)));
+        assertTrue(strategy.filter(getOrder("Milk")));
+
+        // then
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(0, snapshot.getCounter("payment.card.commit"));
+        assertEquals(0, snapshot.getCounter("search.all.evaluated"));
+        assertThrows(UnsupportedOperationException.class, () -> Metrics.DISABLED.setEnabled(true));
+    }
+
+    @Test
+    public void reporterGetsSnapshot() {
+        // given
+        Metrics metrics = new Metrics();
+        metrics.increment("orders");
+        AtomicReference<MetricsSnapshot> reported = new AtomicReference<>();
+
+        // when
+        metrics.report(reported::set);
+
+        // then
+        assertEquals(1, reported.get().getCounter("orders"));
+    }
+}
@@ -0,0 +1,68 @@
+package pl.edu.agh.internetshop.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+    @Test
+    public void addedStringsAreAlwaysFound() {
+        // given
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+
+        // when
+        for(int i = 0; i < 10000; i++) filter.add("Product " + i);
+
+        // then
+        for(int i = 0; i < 10000; i++) assertTrue(filter.mightContain("Product " + i));
+    }
+
+    @Test
+    public void falsePositivesAreRare() {
+        // given
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for(int i = 0; i < 10000; i++) filter.add("Product " + i);
+
+        // when
+        int falsePositives = 0;
+        for(int i = 0; i < 10000; i++) {
+            if(filter.mightContain("Recipient " + i)) falsePositives++;
+        }
+
+        // then
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+
+    @Test
+    public void stringsWithEqualHashCodesAreDistinguished() {
+        // given
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        filter.add("AaAa");
+
+        // when
+        int falsePositives = 0;
+        for(String colliding: new String[] {"AaBB", "BBAa", "BBBB"}) {
+            assertEquals("AaAa".hashCode(), colliding.hashCode());
+            if(filter.mightContain(colliding)) falsePositives++;
+        }
+
+        // then
+        assertEquals(0, falsePositives);
+    }
+
+    @Test
+    public void emptyFilterContainsNothing() {
+        // given
+        BloomFilter filter = new BloomFilter(1, 0.01);
+
+        // when then
+        assertFalse(filter.mightContain("Milk"));
+    }
+
+    @Test
+    public void incorrectParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 1));
+    }
+}
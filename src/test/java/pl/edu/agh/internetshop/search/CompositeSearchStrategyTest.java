@@ -3,10 +3,12 @@ package pl.edu.agh.internetshop.search;
 import org.junit.jupiter.api.Test;
 import pl.edu.agh.internetshop.Order;
 
-import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.BDDMockito.given;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -46,4 +48,108 @@ public class CompositeSearchStrategyTest {
         // when then
         assertFalse(strategy.filter(order));
     }
+
+    @Test
+    public void noStrategies() {
+        // given
+        CompositeSearchStrategy strategy = new CompositeSearchStrategy();
+
+        // when then
+        assertTrue(strategy.filter(mock(Order.class)));
+    }
+
+    @Test
+    public void stopsAtFirstFailingStrategy() {
+        // given
+        Order order = mock(Order.class);
+        SearchStrategy failing = getMockSearchStrategy(false);
+        SearchStrategy passing = getMockSearchStrategy(true);
+        CompositeSearchStrategy strategy = new CompositeSearchStrategy(failing, passing);
+
+        // when
+        strategy.filter(order);
+
+        // then
+        verify(passing, never()).filter(order);
+    }
+
+    @Test
+    public void selectiveStrategyIsMovedToFront() {
+        // given
+        Order order = mock(Order.class);
+        AtomicInteger passingCalls = new AtomicInteger();
+        ExceptionFreeSearchStrategy passing = o -> {
+            passingCalls.incrementAndGet();
+            return true;
+        };
+        ExceptionFreeSearchStrategy failing = o -> false;
+        CompositeSearchStrategy strategy = new CompositeSearchStrategy(passing, failing);
+        // reorders happen on random calls, once every REORDER_INTERVAL calls on average
+        for(int i = 0; i < 20 * CompositeSearchStrategy.REORDER_INTERVAL; i++) strategy.filter(order);
+        passingCalls.set(0);
+
+        // when
+        for(int i = 0; i < 100; i++) assertFalse(strategy.filter(order));
+
+        // then
+        assertEquals(0, passingCalls.get());
+    }
+
+    @Test
+    public void strategiesAreNotMovedPastOnesWhichMayThrow() {
+        // given
+        Order order = mock(Order.class);
+        AtomicInteger guardedCalls = new AtomicInteger();
+        ExceptionFreeSearchStrategy guard = o -> true;
+        SearchStrategy guarded = o -> {
+            guardedCalls.incrementAndGet();
+            return true;
+        };
+        ExceptionFreeSearchStrategy failing = o -> false;
+        CompositeSearchStrategy strategy = new CompositeSearchStrategy(guard, guarded, failing);
+        for(int i = 0; i < 20 * CompositeSearchStrategy.REORDER_INTERVAL; i++) strategy.filter(order);
+        guardedCalls.set(0);
+
+        // when
+        for(int i = 0; i < 100; i++) assertFalse(strategy.filter(order));
+
+        // then
+        assertEquals(100, guardedCalls.get());
+    }
+
+    @Test
+    public void lookupIntersectsIndexedStrategies() {
+        // given
+        PostingList recipientPositions = postingListOf(1, 2, 5);
+        PostingList productPositions = postingListOf(2, 3, 5, 8);
+        IndexedSearchStrategy recipient = mock(IndexedSearchStrategy.class);
+        IndexedSearchStrategy product = mock(IndexedSearchStrategy.class);
+        SearchIndexes indexes = new SearchIndexes();
+        given(recipient.lookup(indexes)).willReturn(recipientPositions);
+        given(product.lookup(indexes)).willReturn(productPositions);
+        CompositeSearchStrategy strategy = new CompositeSearchStrategy(recipient, getMockSearchStrategy(true), product);
+
+        // when
+        PostingList candidates = strategy.lookup(indexes);
+
+        // then
+        assertEquals(2, candidates.size());
+        assertEquals(2, candidates.get(0));
+        assertEquals(5, candidates.get(1));
+    }
+
+    @Test
+    public void lookupWithoutIndexedStrategies() {
+        // given
+        CompositeSearchStrategy strategy = new CompositeSearchStrategy(getMockSearchStrategy(true), getMockSearchStrategy(true));
+
+        // when then
+        assertNull(strategy.lookup(new SearchIndexes()));
+    }
+
+    private PostingList postingListOf(int... positions) {
+        PostingList postingList = new PostingList();
+        for(int position: positions) postingList.add(position);
+        return postingList;
+    }
 }
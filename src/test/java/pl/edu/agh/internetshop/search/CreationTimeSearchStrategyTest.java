@@ -0,0 +1,48 @@
+package pl.edu.agh.internetshop.search;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.internetshop.Order;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class CreationTimeSearchStrategyTest {
+    private static final Instant FROM = Instant.parse("2020-04-01T00:00:00Z");
+    private static final Instant TO = Instant.parse("2020-04-08T00:00:00Z");
+
+    private Order getOrderCreatedAt(String creationTime) {
+        Order order = mock(Order.class);
+        given(order.getCreationTime()).willReturn(Instant.parse(creationTime));
+        return order;
+    }
+
+    @Test
+    public void testMatchingOrder() {
+        // given
+        CreationTimeSearchStrategy strategy = new CreationTimeSearchStrategy(FROM, TO);
+
+        // when then
+        assertTrue(strategy.filter(getOrderCreatedAt("2020-04-01T00:00:00Z")));
+        assertTrue(strategy.filter(getOrderCreatedAt("2020-04-07T23:59:59.999999999Z")));
+    }
+
+    @Test
+    public void testNonMatchingOrder() {
+        // given
+        CreationTimeSearchStrategy strategy = new CreationTimeSearchStrategy(FROM, TO);
+
+        // when then
+        assertFalse(strategy.filter(getOrderCreatedAt("2020-03-31T23:59:59.999Z")));
+        assertFalse(strategy.filter(getOrderCreatedAt("2020-04-08T00:00:00Z")));
+        assertFalse(strategy.filter(mock(Order.class)));
+    }
+
+    @Test
+    public void createWithEmptyRange() {
+        // when then
+        assertThrows(IllegalArgumentException.class, () -> new CreationTimeSearchStrategy(TO, FROM));
+    }
+}
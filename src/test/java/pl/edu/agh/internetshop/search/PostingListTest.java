@@ -0,0 +1,120 @@
+package pl.edu.agh.internetshop.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PostingListTest {
+    private PostingList postingListOf(int... positions) {
+        PostingList postingList = new PostingList();
+        for(int position: positions) postingList.add(position);
+        return postingList;
+    }
+
+    @Test
+    public void addPositions() {
+        // given
+        PostingList postingList = postingListOf(1, 5, 100, 101, 102);
+
+        // when then
+        assertEquals(5, postingList.size());
+        assertEquals(1, postingList.get(0));
+        assertEquals(102, postingList.get(4));
+    }
+
+    @Test
+    public void addSamePositionTwice() {
+        // given
+        PostingList postingList = postingListOf(3, 3);
+
+        // when then
+        assertEquals(1, postingList.size());
+    }
+
+    @Test
+    public void addPositionsOutOfOrder() {
+        // given
+        PostingList postingList = postingListOf(3, 7, 1, 5, 5, 9, 3).snapshot();
+
+        // when then
+        assertEquals(5, postingList.size());
+        assertEquals(1, postingList.get(0));
+        assertEquals(3, postingList.get(1));
+        assertEquals(5, postingList.get(2));
+        assertEquals(7, postingList.get(3));
+        assertEquals(9, postingList.get(4));
+    }
+
+    @Test
+    public void unionOfOverlappingLists() {
+        // given
+        PostingList a = postingListOf(1, 3, 5);
+        PostingList b = postingListOf(2, 3, 6);
+
+        // when
+        PostingList union = PostingList.union(a, b);
+
+        // then
+        assertEquals(5, union.size());
+        assertEquals(1, union.get(0));
+        assertEquals(2, union.get(1));
+        assertEquals(3, union.get(2));
+        assertEquals(5, union.get(3));
+        assertEquals(6, union.get(4));
+    }
+
+    @Test
+    public void unionWithEmptyList() {
+        // given
+        PostingList a = postingListOf(1, 3, 5);
+
+        // when then
+        assertSame(a, PostingList.union(a, PostingList.EMPTY));
+        assertSame(a, PostingList.union(PostingList.EMPTY, a));
+    }
+
+    @Test
+    public void unionOfManyLists() {
+        // given
+        PostingList a = postingListOf(4, 8);
+        PostingList b = postingListOf(1, 4);
+        PostingList c = postingListOf(2);
+
+        // when
+        PostingList union = PostingList.unionAll(Arrays.asList(a, b, c, PostingList.EMPTY));
+
+        // then
+        assertEquals(4, union.size());
+        assertEquals(1, union.get(0));
+        assertEquals(2, union.get(1));
+        assertEquals(4, union.get(2));
+        assertEquals(8, union.get(3));
+    }
+
+    @Test
+    public void intersectionOfOverlappingLists() {
+        // given
+        PostingList a = postingListOf(1, 3, 5, 7);
+        PostingList b = postingListOf(2, 3, 7, 8);
+
+        // when
+        PostingList intersection = PostingList.intersection(a, b);
+
+        // then
+        assertEquals(2, intersection.size());
+        assertEquals(3, intersection.get(0));
+        assertEquals(7, intersection.get(1));
+    }
+
+    @Test
+    public void intersectionOfDisjointLists() {
+        // given
+        PostingList a = postingListOf(1, 3);
+        PostingList b = postingListOf(2, 4);
+
+        // when then
+        assertTrue(PostingList.intersection(a, b).isEmpty());
+    }
+}
@@ -0,0 +1,62 @@
+package pl.edu.agh.internetshop.search;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.internetshop.Order;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class PriceRangeSearchStrategyTest {
+    private Order getOrderWithTotalPrice(String totalPrice) {
+        Order order = mock(Order.class);
+        given(order.getTotalPrice()).willReturn(new BigDecimal(totalPrice));
+        return order;
+    }
+
+    @Test
+    public void testMatchingOrder() {
+        // given
+        PriceRangeSearchStrategy strategy = new PriceRangeSearchStrategy(BigDecimal.valueOf(10), BigDecimal.valueOf(20));
+
+        // when then
+        assertTrue(strategy.filter(getOrderWithTotalPrice("10.00")));
+        assertTrue(strategy.filter(getOrderWithTotalPrice("15.50")));
+        assertTrue(strategy.filter(getOrderWithTotalPrice("20.0")));
+    }
+
+    @Test
+    public void testNonMatchingOrder() {
+        // given
+        PriceRangeSearchStrategy strategy = new PriceRangeSearchStrategy(BigDecimal.valueOf(10), BigDecimal.valueOf(20));
+
+        // when then
+        assertFalse(strategy.filter(getOrderWithTotalPrice("9.99")));
+        assertFalse(strategy.filter(getOrderWithTotalPrice("20.01")));
+    }
+
+    @Test
+    public void testMatchingOrderWithTolerance() {
+        // given
+        PriceRangeSearchStrategy strategy = PriceRangeSearchStrategy.around(new BigDecimal("10.00"), new BigDecimal("0.05"));
+
+        // when then
+        assertTrue(strategy.filter(getOrderWithTotalPrice("9.95")));
+        assertTrue(strategy.filter(getOrderWithTotalPrice("10.0")));
+        assertFalse(strategy.filter(getOrderWithTotalPrice("10.06")));
+    }
+
+    @Test
+    public void createWithEmptyRange() {
+        // when then
+        assertThrows(IllegalArgumentException.class, () -> new PriceRangeSearchStrategy(BigDecimal.valueOf(20), BigDecimal.valueOf(10)));
+    }
+
+    @Test
+    public void createWithNegativeTolerance() {
+        // when then
+        assertThrows(IllegalArgumentException.class, () -> PriceRangeSearchStrategy.around(BigDecimal.TEN, BigDecimal.valueOf(-1)));
+    }
+}
@@ -31,4 +31,18 @@ public class PriceSearchStrategyTest {
         // when then
         assertFalse(strategy.filter(order));
     }
+
+    @Test
+    public void testNullPrice() {
+        // given
+        Order order = mock(Order.class);
+        given(order.getTotalPrice()).willReturn(BigDecimal.valueOf(1000));
+        PriceSearchStrategy strategy = new PriceSearchStrategy(null);
+        SearchIndexes indexes = new SearchIndexes();
+        indexes.add(order, 0);
+
+        // when then
+        assertFalse(strategy.filter(order));
+        assertEquals(0, strategy.lookup(indexes).size());
+    }
 }
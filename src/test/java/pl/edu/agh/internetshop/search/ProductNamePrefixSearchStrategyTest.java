@@ -0,0 +1,43 @@
+package pl.edu.agh.internetshop.search;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.internetshop.Order;
+import pl.edu.agh.internetshop.Product;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class ProductNamePrefixSearchStrategyTest {
+    private Order getOrderWithProducts(String... productNames) {
+        Order order = mock(Order.class);
+        Product[] products = new Product[productNames.length];
+        for(int i = 0; i < productNames.length; i++) {
+            products[i] = mock(Product.class);
+            given(products[i].getName()).willReturn(productNames[i]);
+        }
+        given(order.getProducts()).willReturn(Arrays.asList(products));
+        return order;
+    }
+
+    @Test
+    public void testMatchingOrder() {
+        // given
+        ProductNamePrefixSearchStrategy strategy = new ProductNamePrefixSearchStrategy("Torment");
+
+        // when then
+        assertTrue(strategy.filter(getOrderWithProducts("Endless Pain", "Tormentor 3000")));
+        assertTrue(strategy.filter(getOrderWithProducts("Torment")));
+    }
+
+    @Test
+    public void testNonMatchingOrder() {
+        // given
+        ProductNamePrefixSearchStrategy strategy = new ProductNamePrefixSearchStrategy("Torment");
+
+        // when then
+        assertFalse(strategy.filter(getOrderWithProducts("Endless Pain", "The Tormentor")));
+    }
+}
@@ -0,0 +1,212 @@
+package pl.edu.agh.internetshop.search;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.internetshop.Address;
+import pl.edu.agh.internetshop.Order;
+import pl.edu.agh.internetshop.Product;
+import pl.edu.agh.internetshop.Shipment;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class SearchIndexesTest {
+    private Order getOrderWithRecipient(String recipientName, String... productNames) {
+        Order order = mock(Order.class);
+        Address recipientAddress = mock(Address.class);
+        given(recipientAddress.getName()).willReturn(recipientName);
+        Shipment shipment = mock(Shipment.class);
+        given(shipment.getRecipientAddress()).willReturn(recipientAddress);
+        given(order.getShipment()).willReturn(shipment);
+        Product[] products = new Product[productNames.length];
+        for(int i = 0; i < productNames.length; i++) {
+            products[i] = mock(Product.class);
+            given(products[i].getName()).willReturn(productNames[i]);
+        }
+        given(order.getProducts()).willReturn(Arrays.asList(products));
+        return order;
+    }
+
+    @Test
+    public void findByRecipientName() {
+        // given
+        SearchIndexes indexes = new SearchIndexes();
+        indexes.add(getOrderWithRecipient("Millie Petrozza"), 0);
+        indexes.add(getOrderWithRecipient("Nick Holmes"), 1);
+        indexes.add(getOrderWithRecipient("Millie Petrozza"), 2);
+
+        // when
+        PostingList positions = indexes.findByRecipientName("Millie Petrozza");
+
+        // then
+        assertEquals(2, positions.size());
+        assertEquals(0, positions.get(0));
+        assertEquals(2, positions.get(1));
+    }
+
+    @Test
+    public void findByNullRecipientName() {
+        // given
+        SearchIndexes indexes = new SearchIndexes();
+        indexes.add(getOrderWithRecipient("Nick Holmes", "Book"), 0);
+
+        // when
+        PostingList positions = indexes.findByRecipientName(null);
+
+        // then
+        assertEquals(0, positions.size());
+    }
+
+    @Test
+    public void findByNullProductName() {
+        // given
+        SearchIndexes indexes = new SearchIndexes();
+        indexes.add(getOrderWithRecipient("Nick Holmes", "Book"), 0);
+
+        // when
+        PostingList positions = indexes.findByProductName(null);
+
+        // then
+        assertEquals(0, positions.size());
+    }
+
+    @Test
+    public void findByRecipientNameIncludesOrdersWithoutShipment() {
+        // given
+        SearchIndexes indexes = new SearchIndexes();
+        indexes.add(getOrderWithRecipient("Nick Holmes"), 0);
+        indexes.add(mock(Order.class), 1);
+
+        // when
+        PostingList positions = indexes.findByRecipientName("Millie Petrozza");
+
+        // then
+        assertEquals(1, positions.size());
+        assertEquals(1, positions.get(0));
+    }
+
+    @Test
+    public void findByProductName() {
+        // given
+        SearchIndexes indexes = new SearchIndexes();
+        indexes.add(getOrderWithRecipient("Nick Holmes", "Endless Pain", "Tormentor 3000"), 0);
+        indexes.add(getOrderWithRecipient("Nick Holmes", "Endorama"), 1);
+        indexes.add(getOrderWithRecipient("Nick Holmes", "Tormentor 3000", "Tormentor 3000"), 2);
+
+        // when
+        PostingList positions = indexes.findByProductName("Tormentor 3000");
+
+        // then
+        assertEquals(2, positions.size());
+        assertEquals(0, positions.get(0));
+        assertEquals(2, positions.get(1));
+    }
+
+    @Test
+    public void findByUnknownProductName() {
+        // given
+        SearchIndexes indexes = new SearchIndexes();
+        indexes.add(getOrderWithRecipient("Nick Holmes", "Endorama"), 0);
+
+        // when then
+        assertTrue(indexes.findByProductName("Tormentor 3000").isEmpty());
+    }
+
+    @Test
+    public void findByProductNamePrefix() {
+        // given
+        SearchIndexes indexes = new SearchIndexes();
+        indexes.add(getOrderWithRecipient("Nick Holmes", "Endless Pain", "Tormentor 3000"), 0);
+        indexes.add(getOrderWithRecipient("Nick Holmes", "Endorama"), 1);
+        indexes.add(getOrderWithRecipient("Nick Holmes", "Pleasure to Kill"), 2);
+        indexes.add(getOrderWithRecipient("Nick Holmes", "End"), 3);
+
+        // when
+        PostingList positions = indexes.findByProductNamePrefix("End");
+
+        // then
+        assertEquals(3, positions.size());
+        assertEquals(0, positions.get(0));
+        assertEquals(1, positions.get(1));
+        assertEquals(3, positions.get(2));
+        assertTrue(indexes.findByProductNamePrefix("Endz").isEmpty());
+        assertEquals(4, indexes.findByProductNamePrefix("").size());
+    }
+
+    @Test
+    public void findByProductNameSubstring() {
+        // given
+        SearchIndexes indexes = new SearchIndexes();
+        indexes.add(getOrderWithRecipient("Nick Holmes", "Endless Pain", "Tormentor 3000"), 0);
+        indexes.add(getOrderWithRecipient("Nick Holmes", "Endorama"), 1);
+        indexes.add(getOrderWithRecipient("Nick Holmes", "Pleasure to Kill"), 2);
+        indexes.add(getOrderWithRecipient("Nick Holmes", "Extreme Aggression"), 3);
+
+        // when
+        PostingList positions = indexes.findByProductNameSubstring("ess");
+
+        // then
+        assertEquals(2, positions.size());
+        assertEquals(0, positions.get(0));
+        assertEquals(3, positions.get(1));
+        assertEquals(1, indexes.findByProductNameSubstring("to Kill").size());
+        assertEquals(2, indexes.findByProductNameSubstring("to").size());
+        assertTrue(indexes.findByProductNameSubstring("Killer").isEmpty());
+    }
+
+    private Order getOrderWithProductPrice(String price) {
+        return new Order(Collections.singletonList(new Product("Endorama", new BigDecimal(price))));
+    }
+
+    @Test
+    public void findByTotalPrice() {
+        // given
+        SearchIndexes indexes = new SearchIndexes();
+        indexes.add(getOrderWithProductPrice("10.00"), 0); // 12.30 with taxes
+        indexes.add(getOrderWithProductPrice("20.00"), 1); // 24.60 with taxes
+        indexes.add(getOrderWithProductPrice("10.00"), 2);
+        indexes.add(getOrderWithProductPrice("30.00"), 3); // 36.90 with taxes
+
+        // when
+        PostingList positions = indexes.findByTotalPrice(new BigDecimal("12.3"), new BigDecimal("30"));
+
+        // then
+        assertEquals(3, positions.size());
+        assertEquals(0, positions.get(0));
+        assertEquals(1, positions.get(1));
+        assertEquals(2, positions.get(2));
+    }
+
+    @Test
+    public void findByTotalPriceAfterRepricing() {
+        // given
+        SearchIndexes indexes = new SearchIndexes();
+        Order order = getOrderWithProductPrice("10.00");
+        indexes.add(order, 0);
+
+        // when
+        order.setGeneralDiscount(new BigDecimal("0.5"));
+        indexes.reindex(order, 0);
+
+        // then
+        assertEquals(1, indexes.findByTotalPrice(new BigDecimal("6.15"), new BigDecimal("6.15")).size());
+        assertEquals(0, indexes.findByTotalPrice(new BigDecimal("12.30"), new BigDecimal("12.30")).size());
+    }
+
+    @Test
+    public void findByTotalPriceIncludesOrdersWithoutPrice() {
+        // given
+        SearchIndexes indexes = new SearchIndexes();
+        indexes.add(mock(Order.class), 0);
+
+        // when
+        PostingList positions = indexes.findByTotalPrice(BigDecimal.ONE, BigDecimal.TEN);
+
+        // then
+        assertEquals(1, positions.size());
+    }
+}
@@ -0,0 +1,80 @@
+package pl.edu.agh.internetshop.search;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.internetshop.Address;
+import pl.edu.agh.internetshop.Order;
+import pl.edu.agh.internetshop.Product;
+import pl.edu.agh.internetshop.Shipment;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentSummaryTest {
+    private static Order getOrder(String recipientName, String... productNames) {
+        Product[] products = new Product[productNames.length];
+        for(int i = 0; i < productNames.length; i++) products[i] = new Product(productNames[i], new BigDecimal("1.00"));
+        Order order = new Order(Arrays.asList(products));
+        if(recipientName != null) {
+            order.setShipment(new Shipment(new Address("Internet Shop", "1 Market Street", "30-059", "Krakow"),
+                    new Address(recipientName, "Main Street 1", "00-001", "Warsaw")));
+        }
+        return order;
+    }
+
+    @Test
+    public void namesOfAddedOrdersMayBeContained() {
+        // given
+        SegmentSummary summary = new SegmentSummary(16);
+
+        // when
+        summary.add(getOrder("Jan Kowalski", "Milk", "Bread"));
+
+        // then
+        assertTrue(summary.mightContainProductName("Milk"));
+        assertTrue(summary.mightContainProductName("Bread"));
+        assertTrue(summary.mightContainRecipientName("Jan Kowalski"));
+        assertFalse(summary.mightContainProductName("Tormentor 3000"));
+        assertFalse(summary.mightContainRecipientName("Nick Holmes"));
+    }
+
+    @Test
+    public void orderWithoutRecipientMakesEveryRecipientPossible() {
+        // given
+        SegmentSummary summary = new SegmentSummary(16);
+
+        // when
+        summary.add(getOrder(null, "Milk"));
+
+        // then
+        assertTrue(summary.mightContainRecipientName("Nick Holmes"));
+        assertFalse(summary.mightContainProductName("Bread"));
+    }
+
+    @Test
+    public void nullNamesAreNeverContained() {
+        // given
+        SegmentSummary summary = new SegmentSummary(16);
+        summary.add(getOrder("Jan Kowalski", "Milk"));
+
+        // when then
+        assertFalse(summary.mightContainProductName(null));
+        assertFalse(summary.mightContainRecipientName(null));
+    }
+
+    @Test
+    public void strategiesSkipSegmentsWithoutTheirNames() {
+        // given
+        SegmentSummary summary = new SegmentSummary(16);
+        summary.add(getOrder("Jan Kowalski", "Milk"));
+
+        // when then
+        assertTrue(new ProductNameSearchStrategy("Milk").mayMatch(summary));
+        assertFalse(new ProductNameSearchStrategy("Bread").mayMatch(summary));
+        assertTrue(new RecipientSearchStrategy("Jan Kowalski").mayMatch(summary));
+        assertFalse(new RecipientSearchStrategy("Nick Holmes").mayMatch(summary));
+        assertTrue(new CompositeSearchStrategy(new ProductNameSearchStrategy("Milk"), order -> true).mayMatch(summary));
+        assertFalse(new CompositeSearchStrategy(new ProductNameSearchStrategy("Milk"), new RecipientSearchStrategy("Nick Holmes")).mayMatch(summary));
+    }
+}
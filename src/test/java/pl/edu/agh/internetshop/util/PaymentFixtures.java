@@ -0,0 +1,30 @@
+package pl.edu.agh.internetshop.util;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import pl.edu.agh.internetshop.Order;
+import pl.edu.agh.internetshop.PaymentMethod;
+import pl.edu.agh.internetshop.Product;
+
+public class PaymentFixtures {
+
+	/**
+	 * Total price of an order from {@link #getOrder(PaymentMethod)} in minor
+	 * units, 10.00 with the default tax rate.
+	 */
+	public static final int TOTAL_PRICE_MINOR_UNITS = 1230;
+
+	/**
+	 * Returns an order of a single 10.00 product paid with the given payment
+	 * method.
+	 * 
+	 * @param paymentMethod
+	 *            payment method of the order
+	 */
+	public static Order getOrder(PaymentMethod paymentMethod) {
+		Order order = new Order(Collections.singletonList(new Product("Book", new BigDecimal("10.00"))));
+		order.setPaymentMethod(paymentMethod);
+		return order;
+	}
+}